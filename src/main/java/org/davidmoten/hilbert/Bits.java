@@ -0,0 +1,125 @@
+package org.davidmoten.hilbert;
+
+/**
+ * Word-level bit interleaving used to move between a transposed Hilbert index
+ * (one {@code long} per dimension) and the index as a single {@code long}.
+ *
+ * <p>
+ * {@code spread(x, n)} moves bit {@code k} of {@code x} to bit {@code k * n}
+ * and {@code compact(x, n)} is its inverse (bits of {@code x} that are not at
+ * a multiple of {@code n} are ignored). Dimensions 2, 3 and 4 use magic number
+ * bit spreading, other dimensions fall back to a loop over the set bits.
+ *
+ * <p>
+ * Callers must ensure that {@code x} has at most {@code 64 / n} significant
+ * bits for {@code spread} (always true for a {@link SmallHilbertCurve}).
+ */
+final class Bits {
+
+    private Bits() {
+        // prevent instantiation
+    }
+
+    static long spread(long x, int dimensions) {
+        switch (dimensions) {
+        case 2:
+            return spread2(x);
+        case 3:
+            return spread3(x);
+        case 4:
+            return spread4(x);
+        default:
+            return spreadAny(x, dimensions);
+        }
+    }
+
+    static long compact(long x, int dimensions) {
+        switch (dimensions) {
+        case 2:
+            return compact2(x);
+        case 3:
+            return compact3(x);
+        case 4:
+            return compact4(x);
+        default:
+            return compactAny(x, dimensions);
+        }
+    }
+
+    static long spread2(long x) {
+        x &= 0xFFFFFFFFL;
+        x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+
+    static long compact2(long x) {
+        x &= 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+
+    static long spread3(long x) {
+        x &= 0x1FFFFFL;
+        x = (x | (x << 32)) & 0x001F00000000FFFFL;
+        x = (x | (x << 16)) & 0x001F0000FF0000FFL;
+        x = (x | (x << 8)) & 0x100F00F00F00F00FL;
+        x = (x | (x << 4)) & 0x10C30C30C30C30C3L;
+        x = (x | (x << 2)) & 0x1249249249249249L;
+        return x;
+    }
+
+    static long compact3(long x) {
+        x &= 0x1249249249249249L;
+        x = (x | (x >>> 2)) & 0x10C30C30C30C30C3L;
+        x = (x | (x >>> 4)) & 0x100F00F00F00F00FL;
+        x = (x | (x >>> 8)) & 0x001F0000FF0000FFL;
+        x = (x | (x >>> 16)) & 0x001F00000000FFFFL;
+        x = (x | (x >>> 32)) & 0x00000000001FFFFFL;
+        return x;
+    }
+
+    static long spread4(long x) {
+        x &= 0xFFFFL;
+        x = (x | (x << 24)) & 0x000000FF000000FFL;
+        x = (x | (x << 12)) & 0x000F000F000F000FL;
+        x = (x | (x << 6)) & 0x0303030303030303L;
+        x = (x | (x << 3)) & 0x1111111111111111L;
+        return x;
+    }
+
+    static long compact4(long x) {
+        x &= 0x1111111111111111L;
+        x = (x | (x >>> 3)) & 0x0303030303030303L;
+        x = (x | (x >>> 6)) & 0x000F000F000F000FL;
+        x = (x | (x >>> 12)) & 0x000000FF000000FFL;
+        x = (x | (x >>> 24)) & 0x000000000000FFFFL;
+        return x;
+    }
+
+    static long spreadAny(long x, int dimensions) {
+        long r = 0;
+        for (int shift = 0; x != 0; shift += dimensions) {
+            r |= (x & 1) << shift;
+            x >>>= 1;
+        }
+        return r;
+    }
+
+    static long compactAny(long x, int dimensions) {
+        long r = 0;
+        for (int shift = 0; x != 0; shift++) {
+            r |= (x & 1) << shift;
+            x >>>= dimensions;
+        }
+        return r;
+    }
+
+}
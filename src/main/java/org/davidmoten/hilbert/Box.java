@@ -2,6 +2,8 @@ package org.davidmoten.hilbert;
 
 import java.util.Arrays;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.ToLongFunction;
 
 import com.github.davidmoten.guavamini.Preconditions;
 import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
@@ -21,6 +23,14 @@ final class Box {
         return a.length;
     }
 
+    long[] mins() {
+        return mins(a, b);
+    }
+
+    long[] maxes() {
+        return maxes(a, b);
+    }
+
     @Override
     public String toString() {
         return "Box [" + Arrays.toString(a) + ", " + Arrays.toString(b) + "]";
@@ -40,18 +50,71 @@ final class Box {
         }
     }
 
-    void visitPerimeter(Consumer<? super long[]> visitor) {
+    /**
+     * Visits every cell of the box, passing the result of applying
+     * {@code encoder} to each cell to {@code sink}. The cell array passed to the
+     * encoder is reused so nothing is allocated per cell.
+     *
+     * @param encoder converts a cell to a value (typically its Hilbert index)
+     * @param sink    receives the encoded cells
+     */
+    void visitCells(ToLongFunction<? super long[]> encoder, LongConsumer sink) {
         long[] mins = mins(a, b);
         long[] maxes = maxes(a, b);
-        for (int specialIndex = dimensions() - 1; specialIndex >= 0; specialIndex--) {
-            long[] x = Arrays.copyOf(mins, mins.length);
-            // visit for the minimum at specialIndex
-            visitPerimeter(mins, maxes, x, specialIndex, visitor);
+        long[] x = Arrays.copyOf(mins, mins.length);
+        while (true) {
+            sink.accept(encoder.applyAsLong(x));
+            if (equals(x, maxes)) {
+                break;
+            } else {
+                addOne(x, mins, maxes);
+            }
+        }
+    }
+
+    void visitPerimeter(Consumer<? super long[]> visitor) {
+        // one cell array is reused for every face
+        visitPerimeter(mins(a, b), maxes(a, b), new long[a.length], visitor);
+    }
+
+    /**
+     * Visits the perimeter cells of the box in the same order as
+     * {@link #visitPerimeter(Consumer)}, passing the result of applying
+     * {@code encoder} to each cell to {@code sink}. A single cell array is reused
+     * for all faces so nothing is allocated per cell or per face.
+     *
+     * @param encoder converts a cell to a value (typically its Hilbert index)
+     * @param sink    receives the encoded cells
+     */
+    void visitPerimeter(ToLongFunction<? super long[]> encoder, LongConsumer sink) {
+        visitPerimeter(mins(a, b), maxes(a, b), new long[a.length],
+                cell -> sink.accept(encoder.applyAsLong(cell)));
+    }
+
+    /**
+     * As per {@link #visitPerimeter(Consumer)} for the box with the given minimum
+     * and maximum ordinates using {@code y} to hold each cell so nothing at all is
+     * allocated. The same array is passed to {@code visitor} for every cell.
+     *
+     * @param mins    minimum ordinates of the box
+     * @param maxes   maximum ordinates of the box
+     * @param y       scratch array of the same length as mins
+     * @param visitor receives each cell
+     */
+    static void visitPerimeter(long[] mins, long[] maxes, long[] y,
+            Consumer<? super long[]> visitor) {
+        for (int specialIndex = mins.length - 1; specialIndex >= 0; specialIndex--) {
+            if (firstFaceCell(mins, maxes, mins[specialIndex], specialIndex, y)) {
+                do {
+                    visitor.accept(y);
+                } while (nextFaceCell(mins, maxes, specialIndex, y));
+            }
             if (mins[specialIndex] != maxes[specialIndex]) {
-                // visit for the maximum at specialIndex
-                long[] y = Arrays.copyOf(mins, mins.length);
-                y[specialIndex] = maxes[specialIndex];
-                visitPerimeter(mins, maxes, y, specialIndex, visitor);
+                if (firstFaceCell(mins, maxes, maxes[specialIndex], specialIndex, y)) {
+                    do {
+                        visitor.accept(y);
+                    } while (nextFaceCell(mins, maxes, specialIndex, y));
+                }
             } else {
                 break;
             }
@@ -61,46 +124,74 @@ final class Box {
     @VisibleForTesting
     static void visitPerimeter(long[] mins, long[] maxes, long[] x, int specialIndex,
             Consumer<? super long[]> visitor) {
-        long[] y = Arrays.copyOf(x, x.length);
+        long[] y = new long[x.length];
+        if (firstFaceCell(mins, maxes, x[specialIndex], specialIndex, y)) {
+            do {
+                visitor.accept(y);
+            } while (nextFaceCell(mins, maxes, specialIndex, y));
+        }
+    }
+
+    /**
+     * Sets {@code y} to the first cell of the face where the ordinate at
+     * {@code specialIndex} is {@code value}. Ordinates to the left of
+     * specialIndex range over the whole box and ordinates to the right range over
+     * the interior of the box only (so that faces do not overlap).
+     *
+     * @return false if the face is empty
+     */
+    private static boolean firstFaceCell(long[] mins, long[] maxes, long value,
+            int specialIndex, long[] y) {
+        for (int i = 0; i < specialIndex; i++) {
+            y[i] = mins[i];
+        }
+        y[specialIndex] = value;
         for (int i = specialIndex + 1; i < y.length; i++) {
             if (mins[i] >= maxes[i] - 1) {
-                return;
+                return false;
             }
             y[i] = mins[i] + 1;
         }
-        visitor.accept(y);
-        while (true) {
-            // try to increment once
-            for (int i = y.length - 1; i >= 0; i--) {
-                if (i > specialIndex) {
-                    // to the right of specialIndex we only allow values between min + 1 and max -1
-                    // inclusive
-                    if (y[i] == maxes[i] - 1) {
-                        y[i] = mins[i] + 1;
-                        // continue looping to increment at the next index to the left
-                    } else {
-                        // increment happened without carryover so we break and report y
-                        y[i] += 1;
-                        break;
-                    }
-                } else if (i < specialIndex) {
-                    // to the left of specialIndex we allow all values
-                    if (y[i] == maxes[i]) {
-                        if (i == 0) {
-                            return;
-                        } else {
-                            y[i] = mins[i];
-                        }
+        return true;
+    }
+
+    /**
+     * Moves {@code y} to the next cell of its face.
+     *
+     * @return false if {@code y} was the last cell of the face
+     */
+    private static boolean nextFaceCell(long[] mins, long[] maxes, int specialIndex,
+            long[] y) {
+        // try to increment once
+        for (int i = y.length - 1; i >= 0; i--) {
+            if (i > specialIndex) {
+                // to the right of specialIndex we only allow values between min + 1 and max -1
+                // inclusive
+                if (y[i] == maxes[i] - 1) {
+                    y[i] = mins[i] + 1;
+                    // continue looping to increment at the next index to the left
+                } else {
+                    // increment happened without carryover so we report y
+                    y[i] += 1;
+                    return true;
+                }
+            } else if (i < specialIndex) {
+                // to the left of specialIndex we allow all values
+                if (y[i] == maxes[i]) {
+                    if (i == 0) {
+                        return false;
                     } else {
-                        y[i] += 1;
-                        break;
+                        y[i] = mins[i];
                     }
-                } else if (i == specialIndex && i == 0) {
-                    return;
+                } else {
+                    y[i] += 1;
+                    return true;
                 }
+            } else if (i == specialIndex && i == 0) {
+                return false;
             }
-            visitor.accept(y);
         }
+        return false;
     }
 
     @VisibleForTesting
@@ -141,6 +232,81 @@ final class Box {
         return c;
     }
 
+    /**
+     * Returns true if and only if {@code point} is inside the box with the given
+     * minimum and maximum ordinates.
+     */
+    static boolean contains(long[] mins, long[] maxes, long[] point) {
+        for (int i = 0; i < point.length; i++) {
+            if (point[i] < mins[i] || point[i] > maxes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if and only if {@code point} is in one of the boxes given by
+     * {@code mins[i]} and {@code maxes[i]}.
+     */
+    static boolean containsAny(long[][] mins, long[][] maxes, long[] point) {
+        for (int i = 0; i < mins.length; i++) {
+            long[] min = mins[i];
+            long[] max = maxes[i];
+            int j = 0;
+            while (j < point.length && point[j] >= min[j] && point[j] <= max[j]) {
+                j++;
+            }
+            if (j == point.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if and only if {@code point} is strictly inside (not on the
+     * perimeter of) one of the boxes given by {@code mins[i]} and
+     * {@code maxes[i]} for i in {@code boxes}.
+     */
+    static boolean insideAny(long[][] mins, long[][] maxes, int[] boxes, long[] point) {
+        for (int i : boxes) {
+            long[] min = mins[i];
+            long[] max = maxes[i];
+            int j = 0;
+            while (j < point.length && point[j] > min[j] && point[j] < max[j]) {
+                j++;
+            }
+            if (j == point.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean intersects(long[] minsA, long[] maxesA, long[] minsB, long[] maxesB) {
+        for (int j = 0; j < minsA.length; j++) {
+            if (maxesA[j] < minsB[j] || maxesB[j] < minsA[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // number of cells in the box saturating at Long.MAX_VALUE
+    long volume() {
+        long volume = 1;
+        for (int i = 0; i < a.length; i++) {
+            long side = Ranges.cells(Math.min(a[i], b[i]), Math.max(a[i], b[i]));
+            try {
+                volume = Math.multiplyExact(volume, side);
+            } catch (ArithmeticException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return volume;
+    }
+
     boolean contains(long[] point) {
         Preconditions.checkArgument(a.length == point.length);
         for (int i = 0; i < a.length; i++) {
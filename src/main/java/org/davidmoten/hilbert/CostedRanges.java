@@ -0,0 +1,104 @@
+package org.davidmoten.hilbert;
+
+import java.util.Arrays;
+
+/**
+ * The ranges chosen by
+ * {@link SmallHilbertCurve#query(long[], long[], QueryCost)} together with the
+ * number of ranges, the cells they cover and their estimated cost.
+ */
+public final class CostedRanges {
+
+    private final Ranges ranges;
+    private final int rangeCount;
+    private final long cells;
+    private final double cost;
+
+    private CostedRanges(Ranges ranges, int rangeCount, long cells, double cost) {
+        this.ranges = ranges;
+        this.rangeCount = rangeCount;
+        this.cells = cells;
+        this.cost = cost;
+    }
+
+    /**
+     * Returns the chosen ranges.
+     *
+     * @return ranges
+     */
+    public Ranges ranges() {
+        return ranges;
+    }
+
+    /**
+     * Returns the chosen number of ranges (the {@code maxRanges} that minimizes
+     * the estimated cost).
+     *
+     * @return number of ranges
+     */
+    public int rangeCount() {
+        return rangeCount;
+    }
+
+    /**
+     * Returns the number of cells covered by the chosen ranges (at least the
+     * number of cells in the region).
+     *
+     * @return cells covered
+     */
+    public long cells() {
+        return cells;
+    }
+
+    /**
+     * Returns the estimated cost of the chosen ranges.
+     *
+     * @return estimated cost
+     */
+    public double cost() {
+        return cost;
+    }
+
+    // Chooses how many of the exact ranges to combine. Combining always joins the
+    // smallest gaps first (as Ranges does) so combining j gaps costs exactly the
+    // sum of the j smallest gaps in extra cells.
+    static CostedRanges choose(Ranges exact, QueryCost model) {
+        RangeSet set = exact.toRangeSet();
+        int n = set.size();
+        long cells = exact.exactCells();
+        long[] gaps = new long[Math.max(0, n - 1)];
+        for (int i = 0; i < gaps.length; i++) {
+            gaps[i] = set.low(i + 1) - set.high(i) - 1;
+        }
+        Arrays.sort(gaps);
+        int bestCount = n;
+        long bestCells = cells;
+        double bestCost = model.cost(n, cells);
+        for (int j = 0; j < gaps.length; j++) {
+            cells = Ranges.saturatedAdd(cells, gaps[j]);
+            double c = model.cost(n - j - 1, cells);
+            if (c < bestCost) {
+                bestCount = n - j - 1;
+                bestCells = cells;
+                bestCost = c;
+            }
+        }
+        Ranges ranges;
+        if (bestCount == n) {
+            ranges = exact;
+        } else {
+            ranges = new Ranges(bestCount);
+            for (int i = 0; i < n; i++) {
+                ranges.add(set.low(i), set.high(i));
+            }
+        }
+        return new CostedRanges(ranges, bestCount, bestCells, bestCost);
+    }
+
+    @Override
+    public String toString() {
+        return "CostedRanges [rangeCount=" + rangeCount + ", cells=" + cells + ", cost=" + cost
+                + "]";
+    }
+
+}
@@ -0,0 +1,20 @@
+package org.davidmoten.hilbert;
+
+/**
+ * Records query phases as JDK Flight Recorder events. The events need the
+ * {@code jdk.jfr} API so they are only available from the Java 11+ version of
+ * this class in the multi-release jar. This version is used on earlier Java
+ * versions (and when the jar was built with a JDK earlier than 11).
+ */
+final class FlightRecorderQueryListener {
+
+    private FlightRecorderQueryListener() {
+        // prevent instantiation
+    }
+
+    static QueryListener instance() {
+        throw new UnsupportedOperationException(
+                "JDK Flight Recorder events require Java 11+");
+    }
+
+}
@@ -22,12 +22,16 @@ public final class HilbertCurve {
     private final int dimensions;
     // cached calculations
     private final int length;
+    // number of levels of an ordinate that are spread per word operation (up to
+    // 4 dimensions)
+    private final int levelsPerChunk;
 
     private HilbertCurve(int bits, int dimensions) {
         this.bits = bits;
         this.dimensions = dimensions;
         // cache a calculated values for small perf improvements
         this.length = bits * dimensions;
+        this.levelsPerChunk = Math.min(bits, 64 / dimensions);
     }
 
     /**
@@ -47,6 +51,10 @@ public final class HilbertCurve {
         return new SmallHilbertCurve.Builder();
     }
 
+    public static MediumHilbertCurve.Builder medium() {
+        return new MediumHilbertCurve.Builder();
+    }
+
     /**
      * Builds a {@link HilbertCurve} instance.
      */
@@ -103,7 +111,6 @@ public final class HilbertCurve {
     public void point(BigInteger index, long[] x) {
         Preconditions.checkNotNull(index);
         Preconditions.checkArgument(index.signum() != -1, "index cannot be negative");
-        Util.zero(x);
         transpose(index, x);
         transposedIndexToPoint(bits, x);
     }
@@ -127,6 +134,115 @@ public final class HilbertCurve {
         return point(BigInteger.valueOf(index));
     }
 
+    /**
+     * Returns a new {@link Encoder} that owns the scratch space needed to convert
+     * points to indexes without allocating. An encoder should not be shared
+     * between threads.
+     * 
+     * @return new encoder
+     */
+    public Encoder encoder() {
+        return new Encoder(this);
+    }
+
+    /**
+     * Returns a new {@link Decoder} that converts indexes to points without
+     * allocating. A decoder should not be shared between threads.
+     * 
+     * @return new decoder
+     */
+    public Decoder decoder() {
+        return new Decoder(this);
+    }
+
+    /**
+     * Converts points to indexes held as 64 bit words (least significant word
+     * first) without allocating.
+     */
+    // NotThreadSafe
+    public static final class Encoder {
+
+        private final HilbertCurve curve;
+        private final long[] x;
+
+        Encoder(HilbertCurve curve) {
+            this.curve = curve;
+            this.x = new long[curve.dimensions];
+        }
+
+        /**
+         * Returns the number of 64 bit words in an index.
+         * 
+         * @return length of the index array passed to
+         *         {@link #encode(long[], long[])}
+         */
+        public int words() {
+            return curve.words();
+        }
+
+        /**
+         * Writes the index of {@code point} to {@code index}, least significant
+         * word first.
+         * 
+         * @param point
+         *            an array of {@code long}. Each ordinate can be between 0 and
+         *            2<sup>bits</sup>-1.
+         * @param index
+         *            receives the index, length at least {@link #words()}
+         * @throws IllegalArgumentException
+         *             if length of point array is not equal to the number of
+         *             dimensions or index array is too small
+         */
+        public void encode(long[] point, long[] index) {
+            Preconditions.checkArgument(point.length == x.length);
+            Preconditions.checkArgument(index.length >= curve.words(), "index array is too small");
+            System.arraycopy(point, 0, x, 0, x.length);
+            curve.toWords(transposedIndexInPlace(curve.bits, x), index);
+        }
+    }
+
+    /**
+     * Converts indexes held as 64 bit words (least significant word first) to
+     * points without allocating.
+     */
+    // NotThreadSafe
+    public static final class Decoder {
+
+        private final HilbertCurve curve;
+
+        Decoder(HilbertCurve curve) {
+            this.curve = curve;
+        }
+
+        /**
+         * Returns the number of 64 bit words in an index.
+         * 
+         * @return length of the index array passed to
+         *         {@link #decode(long[], long[])}
+         */
+        public int words() {
+            return curve.words();
+        }
+
+        /**
+         * Writes the point at {@code index} to {@code point}.
+         * 
+         * @param index
+         *            index along the Hilbert Curve, least significant word first
+         * @param point
+         *            receives the point
+         * @throws IllegalArgumentException
+         *             if length of point array is not equal to the number of
+         *             dimensions or index array is too small
+         */
+        public void decode(long[] index, long[] point) {
+            Preconditions.checkArgument(point.length == curve.dimensions);
+            Preconditions.checkArgument(index.length >= curve.words(), "index array is too small");
+            curve.fromWords(index, point);
+            transposedIndexToPoint(curve.bits, point);
+        }
+    }
+
     /**
      * Returns the transposed representation of the Hilbert curve index.
      * 
@@ -155,14 +271,7 @@ public final class HilbertCurve {
     }
 
     private void transpose(BigInteger index, long[] x) {
-        byte[] b = index.toByteArray();
-        for (int idx = 0; idx < 8 * b.length; idx++) {
-            if ((b[b.length - 1 - idx / 8] & (1L << (idx % 8))) != 0) {
-                int dim = (length - idx - 1) % dimensions;
-                int shift = (idx / dimensions) % bits;
-                x[dim] |= 1L << shift;
-            }
-        }
+        fromWords(toWords(index, new long[words()]), x);
     }
 
     /**
@@ -185,9 +294,22 @@ public final class HilbertCurve {
      */
     @VisibleForTesting
     static long[] transposedIndex(int bits, long... point) {
+        return transposedIndexInPlace(bits, Arrays.copyOf(point, point.length));
+    }
+
+    /**
+     * As per {@link #transposedIndex(int, long...)} but {@code x} is mutated to
+     * become the transposed index (saves an allocation per call).
+     * 
+     * @param bits
+     *            depth of the Hilbert curve
+     * @param x
+     *            point in N-space, overwritten with the transposed index
+     * @return x
+     */
+    static long[] transposedIndexInPlace(int bits, long[] x) {
         final long M = 1L << (bits - 1);
-        final int n = point.length; // n: Number of dimensions
-        final long[] x = Arrays.copyOf(point, n);
+        final int n = x.length; // n: Number of dimensions
         long p, q, t;
         int i;
         // Inverse undo
@@ -264,20 +386,205 @@ public final class HilbertCurve {
     // single number.
     @VisibleForTesting
     BigInteger toIndex(long... transposedIndex) {
-        byte[] b = new byte[length / 8 + 1];
-        int bIndex = length - 1;
-        long mask = 1L << (bits - 1);
-        for (int i = 0; i < bits; i++) {
-            for (int j = 0; j < transposedIndex.length; j++) {
-                if ((transposedIndex[j] & mask) != 0) {
-                    b[b.length - 1 - bIndex / 8] |= 1 << (bIndex % 8);
+        long[] w = new long[words()];
+        toWords(transposedIndex, w);
+        return toBigInteger(w, new byte[8 * w.length]);
+    }
+
+    /**
+     * Returns the number of 64 bit words needed to hold an index.
+     * 
+     * @return number of words in an index
+     */
+    int words() {
+        return (length + 63) >>> 6;
+    }
+
+    /**
+     * Interleaves the transposed index into {@code words} (least significant word
+     * first). Up to 4 dimensions a chunk of levels of one ordinate is spread at a
+     * time, otherwise blocks of 8 ordinates by 8 levels are moved with an 8x8 bit
+     * matrix transpose so that the work is done on whole words rather than bit by
+     * bit.
+     * 
+     * @param x
+     *            transposed index
+     * @param words
+     *            receives the index, length at least {@link #words()}
+     */
+    void toWords(long[] x, long[] words) {
+        final int n = dimensions;
+        Arrays.fill(words, 0, words(), 0);
+        if (n <= 4) {
+            final int levels = levelsPerChunk;
+            for (int j = 0; j < n; j++) {
+                for (int level = 0; level < bits; level += levels) {
+                    long chunk = (x[j] >>> level) & chunkMask(bits - level);
+                    orBits(words, level * n + n - 1 - j, Bits.spread(chunk, n));
+                }
+            }
+        } else {
+            for (int g = 0; g < n; g += 8) {
+                for (int level = 0; level < bits; level += 8) {
+                    // row r is ordinate g + 7 - r so that rows come out in index order
+                    long m = 0;
+                    for (int r = 0; r < 8; r++) {
+                        int j = g + 7 - r;
+                        if (j < n) {
+                            m |= ((x[j] >>> level) & 0xFF) << (r << 3);
+                        }
+                    }
+                    m = transpose8(m);
+                    for (int c = 0; c < 8 && level + c < bits; c++) {
+                        long v = (m >>> (c << 3)) & 0xFF;
+                        int p = (level + c) * n + n - 8 - g;
+                        if (p < 0) {
+                            // the low bits are padding rows beyond the last ordinate
+                            orBits(words, 0, v >>> -p);
+                        } else {
+                            orBits(words, p, v);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reverses {@link #toWords(long[], long[])}, writing the transposed index to
+     * {@code x}.
+     * 
+     * @param words
+     *            index (least significant word first)
+     * @param x
+     *            receives the transposed index
+     */
+    void fromWords(long[] words, long[] x) {
+        final int n = dimensions;
+        if (n <= 4) {
+            final int levels = levelsPerChunk;
+            for (int j = 0; j < n; j++) {
+                long v = 0;
+                for (int level = 0; level < bits; level += levels) {
+                    long chunk = Bits.compact(readBits(words, level * n + n - 1 - j), n);
+                    v |= (chunk & chunkMask(bits - level)) << level;
+                }
+                x[j] = v;
+            }
+        } else {
+            Arrays.fill(x, 0);
+            for (int g = 0; g < n; g += 8) {
+                for (int level = 0; level < bits; level += 8) {
+                    long m = 0;
+                    for (int c = 0; c < 8 && level + c < bits; c++) {
+                        int p = (level + c) * n + n - 8 - g;
+                        long v = p < 0 ? readBits(words, 0) << -p : readBits(words, p);
+                        m |= (v & 0xFF) << (c << 3);
+                    }
+                    m = transpose8(m);
+                    for (int r = 0; r < 8; r++) {
+                        int j = g + 7 - r;
+                        if (j < n) {
+                            x[j] |= ((m >>> (r << 3)) & 0xFF) << level;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // ORs v into the bits of words starting at bit position p
+    private static void orBits(long[] words, int p, long v) {
+        int w = p >>> 6;
+        int shift = p & 63;
+        words[w] |= v << shift;
+        if (shift != 0 && w + 1 < words.length) {
+            words[w + 1] |= v >>> (64 - shift);
+        }
+    }
+
+    // returns the 64 bits of words starting at bit position p
+    private static long readBits(long[] words, int p) {
+        int w = p >>> 6;
+        int shift = p & 63;
+        long v = words[w] >>> shift;
+        if (shift != 0 && w + 1 < words.length) {
+            v |= words[w + 1] << (64 - shift);
+        }
+        return v;
+    }
+
+    // transposes the 8x8 bit matrix with row i in byte i (Hacker's Delight 7-3)
+    @VisibleForTesting
+    static long transpose8(long x) {
+        long t;
+        t = (x ^ (x >>> 7)) & 0x00AA00AA00AA00AAL;
+        x = x ^ t ^ (t << 7);
+        t = (x ^ (x >>> 14)) & 0x0000CCCC0000CCCCL;
+        x = x ^ t ^ (t << 14);
+        t = (x ^ (x >>> 28)) & 0x00000000F0F0F0F0L;
+        x = x ^ t ^ (t << 28);
+        return x;
+    }
+
+    private long chunkMask(int remainingLevels) {
+        return remainingLevels >= levelsPerChunk ? (1L << levelsPerChunk) - 1
+                : (1L << remainingLevels) - 1;
+    }
+
+    /**
+     * Writes the magnitude of {@code index} to {@code words} (least significant
+     * word first). Bits beyond the length of {@code words} are ignored.
+     * 
+     * @param index
+     *            non-negative index
+     * @param words
+     *            receives the index
+     * @return words
+     */
+    static long[] toWords(BigInteger index, long[] words) {
+        if (index.bitLength() <= 63) {
+            Arrays.fill(words, 0);
+            words[0] = index.longValue();
+        } else {
+            // one allocation for the whole magnitude rather than a shift per word
+            byte[] b = index.toByteArray();
+            for (int w = 0; w < words.length; w++) {
+                long v = 0;
+                int end = b.length - 8 * w;
+                for (int i = Math.max(0, end - 8); i < end; i++) {
+                    v = (v << 8) | (b[i] & 0xFF);
                 }
-                bIndex--;
+                words[w] = v;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns the non-negative {@link BigInteger} with the magnitude in
+     * {@code words} (least significant word first).
+     * 
+     * @param words
+     *            magnitude
+     * @param bytes
+     *            scratch array of length {@code 8 * words.length}
+     * @return index
+     */
+    static BigInteger toBigInteger(long[] words, byte[] bytes) {
+        if (words.length == 1 && words[0] >= 0) {
+            return BigInteger.valueOf(words[0]);
+        }
+        for (int w = 0; w < words.length; w++) {
+            long v = words[w];
+            int end = bytes.length - 8 * w;
+            for (int i = end - 1; i >= end - 8; i--) {
+                bytes[i] = (byte) v;
+                v >>>= 8;
             }
-            mask >>= 1;
         }
-        // b is expected to be BigEndian
-        return new BigInteger(1, b);
+        // bytes are expected to be BigEndian
+        return new BigInteger(1, bytes);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package org.davidmoten.hilbert;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Converts between a {@code long} Hilbert index and 2-dimensional points
+ * without using arrays. Produces the same indexes as
+ * {@code HilbertCurve.small().bits(bits).dimensions(2)}.
+ * 
+ * <p>
+ * Points are returned packed into a single {@code long} with {@code x} in the
+ * high 32 bits and {@code y} in the low 32 bits. Use {@link #x(long)} and
+ * {@link #y(long)} to unpack them.
+ */
+public final class HilbertCurve2D {
+
+    private static final StateTable TABLE = StateTable.forDimensions(2);
+
+    private final int bits;
+
+    private HilbertCurve2D(int bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Returns a 2-dimensional Hilbert curve with the given number of bits.
+     * 
+     * @param bits depth of the Hilbert curve, between 1 and 31 inclusive
+     * @return curve
+     */
+    public static HilbertCurve2D bits(int bits) {
+        Preconditions.checkArgument(bits > 0, "bits must be greater than zero");
+        Preconditions.checkArgument(bits <= 31, "bits must be 31 or less");
+        return new HilbertCurve2D(bits);
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * Converts a point to its Hilbert curve index.
+     * 
+     * @param x first ordinate between 0 and 2<sup>bits</sup>-1
+     * @param y second ordinate between 0 and 2<sup>bits</sup>-1
+     * @return index in the range 0 to 2<sup>bits * 2</sup>-1
+     */
+    public long index(long x, long y) {
+        return TABLE.index((Bits.spread2(x) << 1) | Bits.spread2(y), bits);
+    }
+
+    /**
+     * Converts an index along the Hilbert curve to a point packed into a
+     * {@code long}.
+     * 
+     * @param index index along the Hilbert curve from 0
+     * @return packed point, use {@link #x(long)} and {@link #y(long)} to get the
+     *         ordinates
+     */
+    public long point(long index) {
+        long p = TABLE.point(index, bits);
+        return (Bits.compact2(p >>> 1) << 32) | Bits.compact2(p);
+    }
+
+    public static long x(long point) {
+        return point >>> 32;
+    }
+
+    public static long y(long point) {
+        return point & 0xFFFFFFFFL;
+    }
+
+    public long maxOrdinate() {
+        return (1L << bits) - 1;
+    }
+
+    public long maxIndex() {
+        return (1L << (bits * 2)) - 1;
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.davidmoten.hilbert;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Converts between a {@code long} Hilbert index and 3-dimensional points
+ * without using arrays. Produces the same indexes as
+ * {@code HilbertCurve.small().bits(bits).dimensions(3)}.
+ * 
+ * <p>
+ * Points are returned packed into a single {@code long} with 21 bits for each
+ * ordinate ({@code x} highest). Use {@link #x(long)}, {@link #y(long)} and
+ * {@link #z(long)} to unpack them.
+ */
+public final class HilbertCurve3D {
+
+    private static final StateTable TABLE = StateTable.forDimensions(3);
+    private static final long MASK = (1L << 21) - 1;
+
+    private final int bits;
+
+    private HilbertCurve3D(int bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Returns a 3-dimensional Hilbert curve with the given number of bits.
+     * 
+     * @param bits depth of the Hilbert curve, between 1 and 21 inclusive
+     * @return curve
+     */
+    public static HilbertCurve3D bits(int bits) {
+        Preconditions.checkArgument(bits > 0, "bits must be greater than zero");
+        Preconditions.checkArgument(bits <= 21, "bits must be 21 or less");
+        return new HilbertCurve3D(bits);
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * Converts a point to its Hilbert curve index.
+     * 
+     * @param x first ordinate between 0 and 2<sup>bits</sup>-1
+     * @param y second ordinate between 0 and 2<sup>bits</sup>-1
+     * @param z third ordinate between 0 and 2<sup>bits</sup>-1
+     * @return index in the range 0 to 2<sup>bits * 3</sup>-1
+     */
+    public long index(long x, long y, long z) {
+        return TABLE.index((Bits.spread3(x) << 2) | (Bits.spread3(y) << 1) | Bits.spread3(z),
+                bits);
+    }
+
+    /**
+     * Converts an index along the Hilbert curve to a point packed into a
+     * {@code long}.
+     * 
+     * @param index index along the Hilbert curve from 0
+     * @return packed point, use {@link #x(long)}, {@link #y(long)} and
+     *         {@link #z(long)} to get the ordinates
+     */
+    public long point(long index) {
+        long p = TABLE.point(index, bits);
+        return (Bits.compact3(p >>> 2) << 42) | (Bits.compact3(p >>> 1) << 21)
+                | Bits.compact3(p);
+    }
+
+    public static long x(long point) {
+        return point >>> 42;
+    }
+
+    public static long y(long point) {
+        return (point >>> 21) & MASK;
+    }
+
+    public static long z(long point) {
+        return point & MASK;
+    }
+
+    public long maxOrdinate() {
+        return (1L << bits) - 1;
+    }
+
+    public long maxIndex() {
+        return (1L << (bits * 3)) - 1;
+    }
+
+}
@@ -0,0 +1,175 @@
+package org.davidmoten.hilbert;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of primitive {@code long} values with an LSD radix sort for
+ * non-negative values.
+ */
+// NotThreadSafe
+final class LongList {
+
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int RADIX_MASK = RADIX - 1;
+
+    // below this size a comparison sort is quicker than radix passes
+    private static final int MIN_RADIX_SORT_SIZE = 256;
+
+    private long[] values;
+    private int size;
+
+    // reused by sort
+    private long[] scratch;
+    private int[] counts;
+
+    LongList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    LongList(int capacity) {
+        this.values = new long[Math.max(1, capacity)];
+    }
+
+    void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[size++] = value;
+    }
+
+    long get(int i) {
+        return values[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the number of longs held by this list including the scratch array
+     * kept for sorting.
+     *
+     * @return retained longs
+     */
+    long retainedLongs() {
+        return values.length + (scratch == null ? 0 : scratch.length);
+    }
+
+    /**
+     * Drops the scratch array kept for sorting (it is allocated again by the
+     * next large sort).
+     */
+    void releaseScratch() {
+        scratch = null;
+    }
+
+    /**
+     * Removes repeated values from a sorted list.
+     */
+    void distinct() {
+        if (size == 0) {
+            return;
+        }
+        int n = 1;
+        for (int i = 1; i < size; i++) {
+            if (values[i] != values[n - 1]) {
+                values[n++] = values[i];
+            }
+        }
+        size = n;
+    }
+
+    /**
+     * Returns the backing array (valid up to {@link #size()}).
+     *
+     * @return backing array
+     */
+    long[] array() {
+        return values;
+    }
+
+    /**
+     * Sorts the values which must be non-negative and less than
+     * 2<sup>significantBits</sup>.
+     *
+     * @param significantBits number of low bits that can be set in the values
+     */
+    void sort(int significantBits) {
+        if (size >= MIN_RADIX_SORT_SIZE) {
+            if (scratch == null || scratch.length < size) {
+                scratch = new long[values.length];
+            }
+            if (counts == null) {
+                counts = new int[RADIX];
+            }
+        }
+        sort(values, size, significantBits, scratch, counts);
+    }
+
+    /**
+     * Sorts {@code values[0..size-1]} which must be non-negative and less than
+     * 2<sup>significantBits</sup> with an LSD radix sort that only processes the
+     * significant bits (8 at a time). Passes where every value has the same digit
+     * are skipped.
+     *
+     * @param values          values to sort
+     * @param size            number of values to sort
+     * @param significantBits number of low bits that can be set in the values
+     */
+    static void sort(long[] values, int size, int significantBits) {
+        if (size < MIN_RADIX_SORT_SIZE) {
+            Arrays.sort(values, 0, size);
+        } else {
+            sort(values, size, significantBits, new long[size], new int[RADIX]);
+        }
+    }
+
+    // scratch must have length at least size and counts length RADIX when size is
+    // large enough for a radix sort
+    private static void sort(long[] values, int size, int significantBits, long[] scratch,
+            int[] counts) {
+        if (size < MIN_RADIX_SORT_SIZE) {
+            Arrays.sort(values, 0, size);
+            return;
+        }
+        long[] from = values;
+        long[] to = scratch;
+        for (int shift = 0; shift < significantBits; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (from[i] >>> shift) & RADIX_MASK]++;
+            }
+            if (counts[(int) (from[0] >>> shift) & RADIX_MASK] == size) {
+                // all values have the same digit so this pass would not move anything
+                continue;
+            }
+            int total = 0;
+            for (int d = 0; d < RADIX; d++) {
+                int c = counts[d];
+                counts[d] = total;
+                total += c;
+            }
+            for (int i = 0; i < size; i++) {
+                long v = from[i];
+                to[counts[(int) (v >>> shift) & RADIX_MASK]++] = v;
+            }
+            long[] t = from;
+            from = to;
+            to = t;
+        }
+        if (from != values) {
+            System.arraycopy(from, 0, values, 0, size);
+        }
+    }
+
+}
@@ -0,0 +1,521 @@
+package org.davidmoten.hilbert;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Converts between Hilbert index and N-dimensional points for curves where
+ * {@code bits * dimensions} is at most 128. The index is held as a pair of
+ * {@code long} values, the high 64 bits and the low 64 bits (both treated as
+ * unsigned), so that no {@link BigInteger} is involved in the transformation.
+ *
+ * <p>
+ * Note: This algorithm is derived from work done by John Skilling and published
+ * in "Programming the Hilbert curve". (c) 2004 American Institute of Physics.
+ * With thanks also to Paul Chernoch who published a C# algorithm for Skilling's
+ * work on StackOverflow and
+ * <a href="https://github.com/paulchernoch/HilbertTransformation">GitHub</a>).
+ */
+public final class MediumHilbertCurve {
+
+    private final int bits;
+    private final int dimensions;
+    // number of levels in each 64 bit word if the levels align with words,
+    // otherwise 0
+    private final int levelsPerWord;
+
+    private MediumHilbertCurve(int bits, int dimensions) {
+        this.bits = bits;
+        this.dimensions = dimensions;
+        this.levelsPerWord = dimensions <= 32 && 64 % dimensions == 0 ? 64 / dimensions : 0;
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Converts a point to its Hilbert curve index.
+     *
+     * @param point an array of {@code long}. Each ordinate can be between 0 and
+     *              2<sup>bits</sup>-1.
+     * @param index array of length at least 2 to which the high 64 bits of the
+     *              index are written at position 0 and the low 64 bits at
+     *              position 1
+     * @throws IllegalArgumentException if length of point array is not equal to the
+     *                                  number of dimensions.
+     */
+    public void index(long[] point, long[] index) {
+        Preconditions.checkArgument(point.length == dimensions);
+        untranspose(HilbertCurve.transposedIndex(bits, point), index);
+    }
+
+    /**
+     * Converts a point to its Hilbert curve index. Allocates a
+     * {@link BigInteger}, use {@link #index(long[], long[])} to avoid that.
+     *
+     * @param point an array of {@code long}. Each ordinate can be between 0 and
+     *              2<sup>bits</sup>-1.
+     * @return index (nonnegative {@link BigInteger})
+     * @throws IllegalArgumentException if length of point array is not equal to the
+     *                                  number of dimensions.
+     */
+    public BigInteger index(long... point) {
+        long[] index = new long[2];
+        index(point, index);
+        return toBigInteger(index[0], index[1]);
+    }
+
+    /**
+     * Converts an index (distance along the Hilbert Curve from 0) given as its
+     * high and low 64 bits to a point.
+     *
+     * @param hi high 64 bits of the index
+     * @param lo low 64 bits of the index
+     * @param x  array of length {@code dimensions} to which the point is written
+     */
+    public void point(long hi, long lo, long[] x) {
+        transpose(hi, lo, x);
+        HilbertCurve.transposedIndexToPoint(bits, x);
+    }
+
+    public long[] point(long hi, long lo) {
+        long[] x = new long[dimensions];
+        point(hi, lo, x);
+        return x;
+    }
+
+    public long[] point(BigInteger index) {
+        Preconditions.checkNotNull(index);
+        Preconditions.checkArgument(index.signum() != -1, "index cannot be negative");
+        return point(index.shiftRight(64).longValue(), index.longValue());
+    }
+
+    /**
+     * Returns a new {@link Encoder} that owns the scratch space needed to convert
+     * points to indexes without allocating. An encoder should not be shared
+     * between threads.
+     *
+     * @return new encoder
+     */
+    public Encoder encoder() {
+        return new Encoder(this);
+    }
+
+    /**
+     * Returns a new {@link Decoder} that converts indexes to points without
+     * allocating. A decoder should not be shared between threads.
+     *
+     * @return new decoder
+     */
+    public Decoder decoder() {
+        return new Decoder(this);
+    }
+
+    /**
+     * Converts points to indexes without allocating.
+     */
+    // NotThreadSafe
+    public static final class Encoder {
+
+        private final MediumHilbertCurve curve;
+        private final long[] x;
+
+        Encoder(MediumHilbertCurve curve) {
+            this.curve = curve;
+            this.x = new long[curve.dimensions];
+        }
+
+        /**
+         * Writes the index of {@code point} to {@code index}.
+         *
+         * @param point an array of {@code long}. Each ordinate can be between 0 and
+         *              2<sup>bits</sup>-1.
+         * @param index array of length at least 2 to which the high 64 bits of the
+         *              index are written at position 0 and the low 64 bits at
+         *              position 1
+         * @throws IllegalArgumentException if length of point array is not equal to
+         *                                  the number of dimensions.
+         */
+        public void encode(long[] point, long[] index) {
+            Preconditions.checkArgument(point.length == x.length);
+            System.arraycopy(point, 0, x, 0, x.length);
+            curve.untranspose(HilbertCurve.transposedIndexInPlace(curve.bits, x), index);
+        }
+    }
+
+    /**
+     * Converts indexes to points without allocating.
+     */
+    // NotThreadSafe
+    public static final class Decoder {
+
+        private final MediumHilbertCurve curve;
+
+        Decoder(MediumHilbertCurve curve) {
+            this.curve = curve;
+        }
+
+        /**
+         * Writes the point at the index given by its high and low 64 bits to
+         * {@code point}.
+         *
+         * @param hi    high 64 bits of the index
+         * @param lo    low 64 bits of the index
+         * @param point receives the point
+         * @throws IllegalArgumentException if length of point array is not equal to
+         *                                  the number of dimensions.
+         */
+        public void decode(long hi, long lo, long[] point) {
+            Preconditions.checkArgument(point.length == curve.dimensions);
+            curve.point(hi, lo, point);
+        }
+    }
+
+    public long maxOrdinate() {
+        return (1L << bits) - 1;
+    }
+
+    /**
+     * Returns the maximum index of the curve (2<sup>bits * dimensions</sup>-1) as
+     * its high 64 bits at position 0 and its low 64 bits at position 1 (the same
+     * form as {@link #index(long[], long[])} and as the bounds of
+     * {@link Range128}).
+     *
+     * @return high and low 64 bits of the maximum index
+     */
+    public long[] maxIndex() {
+        int n = bits * dimensions;
+        long hi;
+        if (n <= 64) {
+            hi = 0;
+        } else if (n == 128) {
+            hi = -1L;
+        } else {
+            hi = (1L << (n - 64)) - 1;
+        }
+        long lo = n >= 64 ? -1L : (1L << n) - 1;
+        return new long[] { hi, lo };
+    }
+
+    // interleave the transposed index into hi, lo
+    private void untranspose(long[] x, long[] index) {
+        final int n = dimensions;
+        long hi = 0;
+        long lo = 0;
+        if (levelsPerWord > 0) {
+            long lowMask = (1L << levelsPerWord) - 1;
+            for (int j = 0; j < n; j++) {
+                lo |= Bits.spread(x[j] & lowMask, n) << (n - 1 - j);
+                hi |= Bits.spread(x[j] >>> levelsPerWord, n) << (n - 1 - j);
+            }
+        } else {
+            for (int level = bits - 1; level >= 0; level--) {
+                for (int j = 0; j < n; j++) {
+                    hi = (hi << 1) | (lo >>> 63);
+                    lo = (lo << 1) | ((x[j] >>> level) & 1);
+                }
+            }
+        }
+        index[0] = hi;
+        index[1] = lo;
+    }
+
+    private void transpose(long hi, long lo, long[] x) {
+        final int n = dimensions;
+        if (levelsPerWord > 0) {
+            for (int j = 0; j < n; j++) {
+                x[j] = Bits.compact(lo >>> (n - 1 - j), n)
+                        | (Bits.compact(hi >>> (n - 1 - j), n) << levelsPerWord);
+            }
+        } else {
+            for (int j = 0; j < n; j++) {
+                long v = 0;
+                int p = n - 1 - j;
+                for (int level = 0; level < bits; level++) {
+                    long bit = p < 64 ? lo >>> p : hi >>> (p - 64);
+                    v |= (bit & 1) << level;
+                    p += n;
+                }
+                x[j] = v;
+            }
+        }
+    }
+
+    static BigInteger toBigInteger(long hi, long lo) {
+        byte[] b = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            b[7 - i] = (byte) (hi >>> (8 * i));
+            b[15 - i] = (byte) (lo >>> (8 * i));
+        }
+        return new BigInteger(1, b);
+    }
+
+    static int compare(long aHi, long aLo, long bHi, long bLo) {
+        int c = Long.compareUnsigned(aHi, bHi);
+        if (c != 0) {
+            return c;
+        } else {
+            return Long.compareUnsigned(aLo, bLo);
+        }
+    }
+
+    /////////////////////////////////////////////////
+    // Query support
+    ////////////////////////////////////////////////
+
+    /**
+     * Returns index ranges exactly covering the region bounded by {@code a} and
+     * {@code b}. The list will be in increasing order of the range bounds (there
+     * should be no overlaps).
+     *
+     * @param a one vertex of the region
+     * @param b the opposing vertex to a
+     * @return ranges
+     */
+    public List<Range128> query(long[] a, long[] b) {
+        return query(a, b, 0);
+    }
+
+    /**
+     * Returns index ranges covering the region bounded by {@code a} and {@code b}.
+     * The list will be in increasing order of the range bounds (there should be no
+     * overlaps). If there are more than {@code maxRanges} exact ranges then the
+     * ranges separated by the smallest gaps are joined so the ranges may cover a
+     * larger region than the search box.
+     *
+     * @param a         one vertex of the region
+     * @param b         the opposing vertex to a
+     * @param maxRanges the maximum number of ranges to be returned. If 0 then all
+     *                  ranges are returned.
+     * @return ranges
+     */
+    public List<Range128> query(long[] a, long[] b, int maxRanges) {
+        Preconditions.checkArgument(maxRanges >= 0);
+        // this is the Perimeter Algorithm mentioned in README.md with indexes held as
+        // hi, lo pairs in a primitive array
+        Box box = new Box(a, b);
+        Pairs list = new Pairs();
+        long[] index = new long[2];
+        // the encoder transposes a copy held in its own scratch array in place
+        Encoder encoder = encoder();
+        box.visitPerimeter(cell -> {
+            encoder.encode(cell, index);
+            list.add(index[0], index[1]);
+        });
+        list.sort();
+        List<Range128> ranges = new ArrayList<>();
+        long[] point = new long[dimensions];
+        long startHi = 0;
+        long startLo = 0;
+        boolean open = false;
+        int i = 0;
+        int n = list.size;
+        while (i < n) {
+            if (!open) {
+                startHi = list.hi(i);
+                startLo = list.lo(i);
+                open = true;
+            }
+            while (i < n - 1 && list.isSuccessor(i + 1, i)) {
+                i++;
+            }
+            long hi = list.hi(i);
+            long lo = list.lo(i);
+            if (i == n - 1) {
+                ranges.add(new Range128(startHi, startLo, hi, lo));
+                break;
+            }
+            // the next index along the curve
+            long nextLo = lo + 1;
+            long nextHi = nextLo == 0 ? hi + 1 : hi;
+            point(nextHi, nextLo, point);
+            if (!box.contains(point)) {
+                ranges.add(new Range128(startHi, startLo, hi, lo));
+                open = false;
+            }
+            // otherwise the next index is internal to the box so the next value in the
+            // sorted perimeter indexes must be where it exits
+            i++;
+        }
+        if (maxRanges == 0 || ranges.size() <= maxRanges) {
+            return ranges;
+        } else {
+            return join(ranges, maxRanges);
+        }
+    }
+
+    // joins the ranges with the smallest gaps between them
+    private static List<Range128> join(List<Range128> ranges, int maxRanges) {
+        int n = ranges.size();
+        long[] gaps = new long[2 * (n - 1)];
+        int[] order = new int[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            Range128 r = ranges.get(i);
+            Range128 next = ranges.get(i + 1);
+            long lo = next.lowLo() - r.highLo();
+            long borrow = Long.compareUnsigned(next.lowLo(), r.highLo()) < 0 ? 1 : 0;
+            gaps[2 * i] = next.lowHi() - r.highHi() - borrow;
+            gaps[2 * i + 1] = lo;
+            order[i] = i;
+        }
+        sortByGap(order, gaps);
+        boolean[] joined = new boolean[n - 1];
+        for (int i = 0; i < n - maxRanges; i++) {
+            joined[order[i]] = true;
+        }
+        List<Range128> list = new ArrayList<>(maxRanges);
+        Range128 start = ranges.get(0);
+        for (int i = 0; i < n - 1; i++) {
+            if (!joined[i]) {
+                Range128 end = ranges.get(i);
+                list.add(new Range128(start.lowHi(), start.lowLo(), end.highHi(), end.highLo()));
+                start = ranges.get(i + 1);
+            }
+        }
+        Range128 end = ranges.get(n - 1);
+        list.add(new Range128(start.lowHi(), start.lowLo(), end.highHi(), end.highLo()));
+        return list;
+    }
+
+    // heap sorts gap numbers by gap (hi, lo pairs in gaps) then by gap number so
+    // that nothing is boxed
+    private static void sortByGap(int[] order, long[] gaps) {
+        int n = order.length;
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDownByGap(order, gaps, i, n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            int t = order[0];
+            order[0] = order[end];
+            order[end] = t;
+            siftDownByGap(order, gaps, 0, end);
+        }
+    }
+
+    private static void siftDownByGap(int[] order, long[] gaps, int i, int n) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                return;
+            }
+            if (child + 1 < n && gapLess(gaps, order[child], order[child + 1])) {
+                child++;
+            }
+            if (!gapLess(gaps, order[i], order[child])) {
+                return;
+            }
+            int t = order[i];
+            order[i] = order[child];
+            order[child] = t;
+            i = child;
+        }
+    }
+
+    private static boolean gapLess(long[] gaps, int x, int y) {
+        int c = compare(gaps[2 * x], gaps[2 * x + 1], gaps[2 * y], gaps[2 * y + 1]);
+        return c < 0 || c == 0 && x < y;
+    }
+
+    // growable array of hi, lo pairs
+    private static final class Pairs {
+        long[] values = new long[64];
+        int size;
+
+        void add(long hi, long lo) {
+            if (2 * size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[2 * size] = hi;
+            values[2 * size + 1] = lo;
+            size++;
+        }
+
+        long hi(int i) {
+            return values[2 * i];
+        }
+
+        long lo(int i) {
+            return values[2 * i + 1];
+        }
+
+        boolean isSuccessor(int i, int j) {
+            long lo = values[2 * j + 1] + 1;
+            long hi = lo == 0 ? values[2 * j] + 1 : values[2 * j];
+            return values[2 * i] == hi && values[2 * i + 1] == lo;
+        }
+
+        // heap sort so that nothing is allocated
+        void sort() {
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i, size);
+            }
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+        }
+
+        private void siftDown(int i, int n) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) {
+                    return;
+                }
+                if (child + 1 < n && less(child, child + 1)) {
+                    child++;
+                }
+                if (!less(i, child)) {
+                    return;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private boolean less(int i, int j) {
+            return compare(hi(i), lo(i), hi(j), lo(j)) < 0;
+        }
+
+        private void swap(int i, int j) {
+            long hi = values[2 * i];
+            long lo = values[2 * i + 1];
+            values[2 * i] = values[2 * j];
+            values[2 * i + 1] = values[2 * j + 1];
+            values[2 * j] = hi;
+            values[2 * j + 1] = lo;
+        }
+    }
+
+    public static final class Builder {
+        private int bits;
+
+        Builder() {
+            // private instantiation
+        }
+
+        public Builder bits(int bits) {
+            Preconditions.checkArgument(bits > 0, "bits must be greater than zero");
+            Preconditions.checkArgument(bits < 64, "bits must be 63 or less");
+            this.bits = bits;
+            return this;
+        }
+
+        public MediumHilbertCurve dimensions(int dimensions) {
+            Preconditions.checkArgument(dimensions > 1, "dimensions must be at least 2");
+            Preconditions.checkArgument(bits * dimensions <= 128,
+                    "bits * dimensions must be less than or equal to 128");
+            return new MediumHilbertCurve(bits, dimensions);
+        }
+
+    }
+
+}
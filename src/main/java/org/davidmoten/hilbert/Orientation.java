@@ -0,0 +1,136 @@
+package org.davidmoten.hilbert;
+
+import java.util.Arrays;
+
+/**
+ * The state of Skilling's transform when processing a Hilbert index one level
+ * (one bit of every ordinate) at a time from the most significant level down.
+ *
+ * <p>
+ * Skilling's {@code AxestoTranspose} only ever inverts or swaps the lower bits
+ * of the working ordinates based on the higher bits and its Gray encoding step
+ * only depends on the parity of the higher levels. Both can be carried
+ * downwards as a signed permutation of the axes plus a parity bit which makes
+ * the transform a finite state machine that starts at the identity for every
+ * number of bits. Digits are laid out as in the index: the bit for ordinate
+ * {@code j} is bit {@code dimensions - 1 - j} of the digit.
+ */
+// NotThreadSafe
+final class Orientation {
+
+    private final int dimensions;
+
+    // working slot i holds ordinate perm[i] inverted if bit i of flips is set
+    private final int[] perm;
+    private long flips;
+    private long parity;
+
+    Orientation(int dimensions) {
+        this.dimensions = dimensions;
+        this.perm = new int[dimensions];
+        reset();
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    void reset() {
+        for (int i = 0; i < dimensions; i++) {
+            perm[i] = i;
+        }
+        flips = 0;
+        parity = 0;
+    }
+
+    void copyFrom(Orientation o) {
+        System.arraycopy(o.perm, 0, perm, 0, dimensions);
+        flips = o.flips;
+        parity = o.parity;
+    }
+
+    /**
+     * Returns the index digit for the given ordinate digit at the current level
+     * and moves to the next (lower) level.
+     *
+     * @param digit one bit of each ordinate at the current level
+     * @return one level of the index
+     */
+    long encodeDigit(long digit) {
+        final int n = dimensions;
+        long a = 0;
+        long g = 0;
+        long result = 0;
+        for (int i = 0; i < n; i++) {
+            long ai = ((digit >>> (n - 1 - perm[i])) ^ (flips >>> i)) & 1;
+            a |= ai << i;
+            g ^= ai;
+            result |= (g ^ parity) << (n - 1 - i);
+        }
+        parity ^= g;
+        advance(a);
+        return result;
+    }
+
+    /**
+     * Returns the ordinate digit for the given index digit at the current level
+     * and moves to the next (lower) level.
+     *
+     * @param digit one level of the index
+     * @return one bit of each ordinate at the current level
+     */
+    long decodeDigit(long digit) {
+        final int n = dimensions;
+        long a = 0;
+        long previous = 0;
+        long result = 0;
+        for (int i = 0; i < n; i++) {
+            long g = ((digit >>> (n - 1 - i)) & 1) ^ parity;
+            long ai = g ^ previous;
+            previous = g;
+            a |= ai << i;
+            result |= (ai ^ ((flips >>> i) & 1)) << (n - 1 - perm[i]);
+        }
+        parity ^= previous;
+        advance(a);
+        return result;
+    }
+
+    // the inverse undo loop of AxestoTranspose applied to the orientation
+    private void advance(long a) {
+        for (int i = 0; i < dimensions; i++) {
+            if (((a >>> i) & 1) != 0) {
+                // invert
+                flips ^= 1;
+            } else if (i != 0) {
+                // exchange
+                int p = perm[0];
+                perm[0] = perm[i];
+                perm[i] = p;
+                long f = (flips ^ (flips >>> i)) & 1;
+                flips ^= f | (f << i);
+            }
+        }
+    }
+
+    /**
+     * Returns a value that identifies this orientation amongst orientations of
+     * the same number of dimensions (for up to 15 dimensions).
+     *
+     * @return key
+     */
+    long key() {
+        long k = 0;
+        for (int i = 0; i < dimensions; i++) {
+            k = (k << 4) | perm[i];
+        }
+        return (((k << dimensions) | flips) << 1) | parity;
+    }
+
+    @Override
+    public String toString() {
+        return "Orientation [perm=" + Arrays.toString(perm) + ", flips="
+                + Long.toBinaryString(flips) + ", parity=" + parity + "]";
+    }
+
+}
@@ -0,0 +1,204 @@
+package org.davidmoten.hilbert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Enumerates and encodes the perimeter cells of a box for the Perimeter
+ * Algorithm using multiple threads. The perimeter is split into the same faces
+ * as {@link Box#visitPerimeter(java.util.function.Consumer)} and large faces
+ * are split further into slabs. Each face or slab is encoded and sorted by a
+ * task on the given executor and the sorted results are merged so that the
+ * output does not depend on the number of threads or on the order in which the
+ * tasks complete.
+ */
+final class ParallelPerimeter {
+
+    // the maximum number of cells encoded by one task
+    private static final long TASK_CELLS = 1 << 16;
+
+    private ParallelPerimeter() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the sorted Hilbert indexes of the perimeter cells of the box when
+     * the encoding tasks on {@code executor} complete. The tasks are merged by
+     * whichever thread completes the last task so no thread blocks waiting for
+     * them.
+     *
+     * @param curve    the curve
+     * @param mins     minimum ordinates of the box
+     * @param maxes    maximum ordinates of the box
+     * @param executor runs the encoding tasks
+     * @return future sorted indexes
+     */
+    static CompletableFuture<long[]> sortedIndexes(SmallHilbertCurve curve, long[] mins,
+            long[] maxes, Executor executor) {
+        List<long[][]> slabs = new ArrayList<>();
+        for (long[][] face : faces(mins, maxes)) {
+            split(face[0], face[1], slabs);
+        }
+        @SuppressWarnings("unchecked")
+        CompletableFuture<long[]>[] futures = new CompletableFuture[slabs.size()];
+        for (int i = 0; i < futures.length; i++) {
+            long[][] slab = slabs.get(i);
+            futures[i] = CompletableFuture.supplyAsync(() -> encode(curve, slab[0], slab[1]),
+                    executor);
+        }
+        return CompletableFuture.allOf(futures).thenApply(x -> {
+            long[][] parts = new long[futures.length][];
+            for (int i = 0; i < parts.length; i++) {
+                // already complete
+                parts[i] = futures[i].join();
+            }
+            return merge(parts);
+        });
+    }
+
+    /**
+     * Returns the faces of the box as pairs of inclusive lower and upper corners.
+     * The faces are disjoint, their union is the perimeter of the box and they
+     * are in the same order as visited by
+     * {@link Box#visitPerimeter(java.util.function.Consumer)}.
+     *
+     * @param mins minimum ordinates of the box
+     * @param maxes maximum ordinates of the box
+     * @return faces
+     */
+    static List<long[][]> faces(long[] mins, long[] maxes) {
+        int n = mins.length;
+        List<long[][]> faces = new ArrayList<>();
+        for (int specialIndex = n - 1; specialIndex >= 0; specialIndex--) {
+            addFace(mins, maxes, specialIndex, mins[specialIndex], faces);
+            if (mins[specialIndex] != maxes[specialIndex]) {
+                addFace(mins, maxes, specialIndex, maxes[specialIndex], faces);
+            } else {
+                break;
+            }
+        }
+        return faces;
+    }
+
+    private static void addFace(long[] mins, long[] maxes, int specialIndex, long value,
+            List<long[][]> faces) {
+        int n = mins.length;
+        long[] lo = new long[n];
+        long[] hi = new long[n];
+        for (int i = 0; i < n; i++) {
+            if (i < specialIndex) {
+                lo[i] = mins[i];
+                hi[i] = maxes[i];
+            } else if (i == specialIndex) {
+                lo[i] = value;
+                hi[i] = value;
+            } else if (mins[i] >= maxes[i] - 1) {
+                // no interior in this dimension so the face is empty
+                return;
+            } else {
+                lo[i] = mins[i] + 1;
+                hi[i] = maxes[i] - 1;
+            }
+        }
+        faces.add(new long[][] { lo, hi });
+    }
+
+    // splits in half along the widest dimension until small enough for one task
+    private static void split(long[] lo, long[] hi, List<long[][]> slabs) {
+        if (cells(lo, hi) <= TASK_CELLS) {
+            slabs.add(new long[][] { lo, hi });
+        } else {
+            int widest = 0;
+            for (int i = 1; i < lo.length; i++) {
+                if (hi[i] - lo[i] > hi[widest] - lo[widest]) {
+                    widest = i;
+                }
+            }
+            long middle = lo[widest] + (hi[widest] - lo[widest]) / 2;
+            long[] hi1 = hi.clone();
+            hi1[widest] = middle;
+            long[] lo2 = lo.clone();
+            lo2[widest] = middle + 1;
+            split(lo, hi1, slabs);
+            split(lo2, hi, slabs);
+        }
+    }
+
+    // number of cells in the box (saturates at Long.MAX_VALUE)
+    private static long cells(long[] lo, long[] hi) {
+        long c = 1;
+        for (int i = 0; i < lo.length; i++) {
+            long w = hi[i] - lo[i] + 1;
+            if (c > Long.MAX_VALUE / w) {
+                return Long.MAX_VALUE;
+            }
+            c *= w;
+        }
+        return c;
+    }
+
+    private static long[] encode(SmallHilbertCurve curve, long[] lo, long[] hi) {
+        LongList indexes = new LongList((int) cells(lo, hi));
+        new Box(lo, hi).visitCells(curve.encoder()::encode, indexes::add);
+        indexes.sort(curve.bits() * curve.dimensions());
+        return indexes.array();
+    }
+
+    // k-way merge of sorted arrays using a binary heap of the array positions
+    private static long[] merge(long[][] parts) {
+        int total = 0;
+        for (long[] part : parts) {
+            total += part.length;
+        }
+        long[] result = new long[total];
+        int k = parts.length;
+        int[] heap = new int[k];
+        int[] positions = new int[k];
+        int size = 0;
+        for (int i = 0; i < k; i++) {
+            if (parts[i].length > 0) {
+                heap[size++] = i;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap, size, i, parts, positions);
+        }
+        int count = 0;
+        while (size > 0) {
+            int p = heap[0];
+            result[count++] = parts[p][positions[p]++];
+            if (positions[p] == parts[p].length) {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, 0, parts, positions);
+        }
+        return result;
+    }
+
+    private static void siftDown(int[] heap, int size, int i, long[][] parts, int[] positions) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && head(heap[child + 1], parts, positions) < head(heap[child],
+                    parts, positions)) {
+                child++;
+            }
+            if (head(heap[i], parts, positions) <= head(heap[child], parts, positions)) {
+                return;
+            }
+            int t = heap[i];
+            heap[i] = heap[child];
+            heap[child] = t;
+            i = child;
+        }
+    }
+
+    private static long head(int part, long[][] parts, int[] positions) {
+        return parts[part][positions[part]];
+    }
+
+}
@@ -0,0 +1,19 @@
+package org.davidmoten.hilbert;
+
+/**
+ * Receives points visited along a Hilbert curve.
+ */
+@FunctionalInterface
+public interface PointConsumer {
+
+    /**
+     * Accepts a point and its index along the curve. The {@code point} array may
+     * be reused by the caller once this method returns so copy it if it needs to
+     * be retained.
+     *
+     * @param index index along the Hilbert curve
+     * @param point ordinates of the point (must not be modified)
+     */
+    void accept(long index, long[] point);
+
+}
@@ -0,0 +1,89 @@
+package org.davidmoten.hilbert;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.github.davidmoten.guavamini.annotations.VisibleForTesting;
+
+/**
+ * Scratch buffers for the Perimeter Algorithm that are reused between queries.
+ * Buffers are taken from a small shared pool for the duration of one query and
+ * then returned so that concurrent queries on any kind of thread (pool workers
+ * or virtual threads) reuse buffers without allocating them per query.
+ *
+ * <p>
+ * The pool is bounded by the total size of the buffers it keeps (not by the
+ * number of processors) so it never retains more than 16MB. Queries that need
+ * more than that should use a caller-owned {@link QueryContext}.
+ */
+// NotThreadSafe
+final class QueryBuffers {
+
+    // the number of buffers kept in the pool
+    private static final int SLOTS = 8;
+
+    // the total number of longs kept by the pooled buffers (16MB)
+    private static final long MAX_POOLED_LONGS = 1 << 21;
+
+    // a buffer holding more longs than this (4MB) is not kept
+    private static final long MAX_BUFFER_LONGS = 1 << 19;
+
+    // a fixed array of slots so that returning a buffer does not allocate
+    private static final AtomicReferenceArray<QueryBuffers> POOL = new AtomicReferenceArray<>(
+            SLOTS);
+    private static final AtomicLong POOLED_LONGS = new AtomicLong();
+
+    final LongList indexes = new LongList();
+
+    // the number of longs counted in POOLED_LONGS while this is in the pool
+    private long pooledLongs;
+
+    static QueryBuffers acquire() {
+        for (int i = 0; i < SLOTS; i++) {
+            QueryBuffers b = POOL.get(i);
+            if (b != null && POOL.compareAndSet(i, b, null)) {
+                POOLED_LONGS.addAndGet(-b.pooledLongs);
+                return b;
+            }
+        }
+        return new QueryBuffers();
+    }
+
+    @VisibleForTesting
+    static void clearPool() {
+        for (int i = 0; i < SLOTS; i++) {
+            QueryBuffers b = POOL.getAndSet(i, null);
+            if (b != null) {
+                POOLED_LONGS.addAndGet(-b.pooledLongs);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static long pooledLongs() {
+        return POOLED_LONGS.get();
+    }
+
+    void release() {
+        indexes.clear();
+        if (indexes.retainedLongs() > MAX_BUFFER_LONGS) {
+            // keep the indexes but not the sort scratch of a large query
+            indexes.releaseScratch();
+        }
+        long longs = indexes.retainedLongs();
+        if (longs > MAX_BUFFER_LONGS) {
+            return;
+        }
+        if (POOLED_LONGS.addAndGet(longs) <= MAX_POOLED_LONGS) {
+            pooledLongs = longs;
+            for (int i = 0; i < SLOTS; i++) {
+                if (POOL.compareAndSet(i, null, this)) {
+                    return;
+                }
+            }
+        }
+        // over budget or no free slot
+        POOLED_LONGS.addAndGet(-longs);
+    }
+
+}
@@ -0,0 +1,122 @@
+package org.davidmoten.hilbert;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Runs Perimeter Algorithm queries (see README.md) on one curve reusing the
+ * buffers for the perimeter indexes, the range bounds and the merge heap
+ * between queries. The buffers grow to suit the largest query seen and are then
+ * reused so that, once warmed up, a query allocates only the {@link Ranges} it
+ * returns or nothing at all when the ranges are passed to a
+ * {@link RangeConsumer}.
+ *
+ * <p>
+ * Obtain an instance with {@link SmallHilbertCurve#queryContext()}. An
+ * instance should not be shared between threads (use one per thread).
+ */
+// NotThreadSafe
+public final class QueryContext {
+
+    private final SmallHilbertCurve curve;
+    private final long[] mins;
+    private final long[] maxes;
+    private final long[] cell;
+    private final long[] point;
+    private final LongList indexes = new LongList();
+    private final Ranges ranges = new Ranges(0);
+
+    // created once so that queries do not allocate lambdas
+    private final Consumer<long[]> addIndex;
+    private final Predicate<long[]> inside;
+
+    QueryContext(SmallHilbertCurve curve) {
+        this.curve = curve;
+        int dimensions = curve.dimensions();
+        this.mins = new long[dimensions];
+        this.maxes = new long[dimensions];
+        this.cell = new long[dimensions];
+        this.point = new long[dimensions];
+        SmallHilbertCurve.Encoder encoder = curve.encoder();
+        this.addIndex = c -> indexes.add(encoder.encode(c));
+        this.inside = p -> Box.contains(mins, maxes, p);
+    }
+
+    /**
+     * Returns the same ranges as {@link SmallHilbertCurve#query(long[], long[], int)}
+     * allocating only the returned {@link Ranges} once the buffers of this context
+     * have grown to suit the query. Ranges added to the returned object are not
+     * combined.
+     *
+     * @param a         one vertex of the region
+     * @param b         the opposing vertex to a
+     * @param maxRanges the maximum number of ranges to be returned. If 0 then all
+     *                  ranges are returned.
+     * @return ranges
+     */
+    public Ranges query(long[] a, long[] b, int maxRanges) {
+        run(a, b, maxRanges);
+        return ranges.copy();
+    }
+
+    /**
+     * Passes the same ranges as
+     * {@link SmallHilbertCurve#query(long[], long[], int)} in increasing order to
+     * {@code consumer}. Nothing is allocated once the buffers of this context have
+     * grown to suit the query.
+     *
+     * @param a         one vertex of the region
+     * @param b         the opposing vertex to a
+     * @param maxRanges the maximum number of ranges to be returned. If 0 then all
+     *                  ranges are returned.
+     * @param consumer  receives the ranges
+     */
+    public void query(long[] a, long[] b, int maxRanges, RangeConsumer consumer) {
+        run(a, b, maxRanges);
+        ranges.visit(consumer);
+    }
+
+    /**
+     * Clears the indexes and ranges of the last query keeping the buffers for
+     * reuse. Each query resets the context itself before it starts.
+     */
+    public void reset() {
+        indexes.clear();
+        ranges.reset(0);
+    }
+
+    private void run(long[] a, long[] b, int maxRanges) {
+        Preconditions.checkArgument(maxRanges >= 0);
+        Preconditions.checkArgument(a.length == mins.length && b.length == mins.length,
+                "points must have the same number of dimensions as the curve");
+        for (int i = 0; i < mins.length; i++) {
+            mins[i] = Math.min(a[i], b[i]);
+            maxes[i] = Math.max(a[i], b[i]);
+        }
+        indexes.clear();
+        ranges.reset(maxRanges);
+        QueryListener listener = curve.listener();
+        if (listener != null) {
+            runInstrumented(listener);
+            return;
+        }
+        Box.visitPerimeter(mins, maxes, cell, addIndex);
+        indexes.sort(curve.bits() * curve.dimensions());
+        curve.ranges(indexes.array(), indexes.size(), inside, point, ranges);
+    }
+
+    private void runInstrumented(QueryListener listener) {
+        long start = System.nanoTime();
+        Box.visitPerimeter(mins, maxes, cell, addIndex);
+        long visited = System.nanoTime();
+        listener.perimeterVisited(indexes.size(), visited - start);
+        indexes.sort(curve.bits() * curve.dimensions());
+        long sorted = System.nanoTime();
+        listener.perimeterSorted(indexes.size(), sorted - visited);
+        curve.ranges(indexes.array(), indexes.size(), inside, point, ranges);
+        SmallHilbertCurve.report(listener, ranges, System.nanoTime() - sorted);
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.davidmoten.hilbert;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Estimates the cost of scanning a store with the ranges returned by a query,
+ * used by {@link SmallHilbertCurve#query(long[], long[], QueryCost)} to choose
+ * how far to combine ranges.
+ */
+@FunctionalInterface
+public interface QueryCost {
+
+    /**
+     * Returns the estimated cost of scanning {@code ranges} ranges that together
+     * cover {@code cells} cells (index values).
+     *
+     * @param ranges number of ranges to be scanned (each typically needing a seek)
+     * @param cells  total number of cells covered by the ranges
+     * @return estimated cost
+     */
+    double cost(long ranges, long cells);
+
+    /**
+     * Returns a cost model with a fixed cost for each range (a seek) plus a cost
+     * for each cell scanned.
+     *
+     * @param costPerRange cost of starting the scan of a range
+     * @param costPerCell  cost of scanning one cell
+     * @return linear cost model
+     */
+    static QueryCost linear(double costPerRange, double costPerCell) {
+        Preconditions.checkArgument(costPerRange >= 0, "costPerRange must be non-negative");
+        Preconditions.checkArgument(costPerCell >= 0, "costPerCell must be non-negative");
+        return (ranges, cells) -> costPerRange * ranges + costPerCell * cells;
+    }
+
+}
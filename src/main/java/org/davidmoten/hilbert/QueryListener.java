@@ -0,0 +1,78 @@
+package org.davidmoten.hilbert;
+
+/**
+ * Receives the timings and sizes of the phases of a Perimeter Algorithm query
+ * (see README.md) made with a curve returned by
+ * {@link SmallHilbertCurve#withListener(QueryListener)}, for example to update
+ * counters and timers in a metrics library. Methods are called on the thread
+ * that runs the query so implementations must be thread-safe if the curve is
+ * queried from more than one thread, and should be quick.
+ *
+ * <p>
+ * All methods do nothing by default so only those of interest need be
+ * implemented.
+ */
+public interface QueryListener {
+
+    /**
+     * Called when the cells on the perimeter of the search box have been visited
+     * and encoded.
+     *
+     * @param cells number of perimeter cells
+     * @param nanos time taken in nanoseconds
+     */
+    default void perimeterVisited(long cells, long nanos) {
+        // do nothing
+    }
+
+    /**
+     * Called when the perimeter indexes have been sorted.
+     *
+     * @param cells number of perimeter indexes sorted
+     * @param nanos time taken in nanoseconds
+     */
+    default void perimeterSorted(long cells, long nanos) {
+        // do nothing
+    }
+
+    /**
+     * Called when the ranges have been built from the sorted perimeter indexes.
+     * Ranges are merged as they are built so the time includes merging (reported
+     * by {@link #rangesMerged(long, long, long, long)}).
+     *
+     * @param exactRanges number of exact ranges found (before merging)
+     * @param nanos       time taken in nanoseconds
+     */
+    default void rangesBuilt(long exactRanges, long nanos) {
+        // do nothing
+    }
+
+    /**
+     * Called after {@link #rangesBuilt(long, long)} with the outcome of merging
+     * the exact ranges to keep within {@code maxRanges}.
+     *
+     * @param mergedGaps   number of gaps merged
+     * @param ranges       number of ranges returned
+     * @param exactCells   number of cells inside the search box
+     * @param coveredCells number of cells covered by the returned ranges
+     */
+    default void rangesMerged(long mergedGaps, long ranges, long exactCells,
+            long coveredCells) {
+        // do nothing
+    }
+
+    /**
+     * Returns a listener that records each phase as a JDK Flight Recorder event
+     * (in the category "Hilbert Curve"). The events cost little when no recording
+     * is running. Requires Java 11+ (the listener is in the Java 11 classes of
+     * the multi-release jar).
+     *
+     * @return listener that commits JFR events
+     * @throws UnsupportedOperationException if running on Java 8 or the jar was
+     *                                       built with a JDK earlier than 11
+     */
+    static QueryListener flightRecorder() {
+        return FlightRecorderQueryListener.instance();
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.davidmoten.hilbert;
+
+import java.math.BigInteger;
+
+/**
+ * An inclusive range of 128-bit Hilbert indexes as returned by
+ * {@link MediumHilbertCurve#query(long[], long[])}. Each bound is held as two
+ * {@code long} values, the high 64 bits and the low 64 bits (both treated as
+ * unsigned).
+ */
+public final class Range128 {
+
+    private final long lowHi;
+    private final long lowLo;
+    private final long highHi;
+    private final long highLo;
+
+    Range128(long lowHi, long lowLo, long highHi, long highLo) {
+        this.lowHi = lowHi;
+        this.lowLo = lowLo;
+        this.highHi = highHi;
+        this.highLo = highLo;
+    }
+
+    public long lowHi() {
+        return lowHi;
+    }
+
+    public long lowLo() {
+        return lowLo;
+    }
+
+    public long highHi() {
+        return highHi;
+    }
+
+    public long highLo() {
+        return highLo;
+    }
+
+    public BigInteger low() {
+        return MediumHilbertCurve.toBigInteger(lowHi, lowLo);
+    }
+
+    public BigInteger high() {
+        return MediumHilbertCurve.toBigInteger(highHi, highLo);
+    }
+
+    public boolean contains(long hi, long lo) {
+        return MediumHilbertCurve.compare(lowHi, lowLo, hi, lo) <= 0
+                && MediumHilbertCurve.compare(hi, lo, highHi, highLo) <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Range128 [low=" + low() + ", high=" + high() + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Long.hashCode(highHi);
+        result = prime * result + Long.hashCode(highLo);
+        result = prime * result + Long.hashCode(lowHi);
+        result = prime * result + Long.hashCode(lowLo);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Range128 other = (Range128) obj;
+        return lowHi == other.lowHi && lowLo == other.lowLo && highHi == other.highHi
+                && highLo == other.highLo;
+    }
+
+}
@@ -0,0 +1,17 @@
+package org.davidmoten.hilbert;
+
+/**
+ * Receives index ranges (for example the ranges found by a query).
+ */
+@FunctionalInterface
+public interface RangeConsumer {
+
+    /**
+     * Accepts the range {@code low} to {@code high} inclusive.
+     *
+     * @param low  low end of the range
+     * @param high high end of the range
+     */
+    void accept(long low, long high);
+
+}
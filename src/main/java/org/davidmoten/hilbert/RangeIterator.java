@@ -0,0 +1,72 @@
+package org.davidmoten.hilbert;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily joins the adjacent sub-cube ranges found by a {@link SubdivisionQuery}
+ * so that ranges are produced in increasing order as they are found. Only as
+ * much of the search is done as is needed to produce the next range.
+ */
+// NotThreadSafe
+final class RangeIterator implements Iterator<Range> {
+
+    private final SubdivisionQuery query;
+
+    // the sub-cube range read past the end of the last range returned
+    private boolean hasPending;
+    private long pendingLow;
+    private long pendingHigh;
+
+    private Range next;
+
+    RangeIterator(SubdivisionQuery query) {
+        this.query = query;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = computeNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Range next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Range r = next;
+        next = null;
+        return r;
+    }
+
+    private Range computeNext() {
+        long low;
+        long high;
+        if (hasPending) {
+            hasPending = false;
+            low = pendingLow;
+            high = pendingHigh;
+        } else if (query.next()) {
+            low = query.low();
+            high = query.high();
+        } else {
+            return null;
+        }
+        while (query.next()) {
+            if (query.low() == high + 1) {
+                // adjacent sub-cubes are joined
+                high = query.high();
+            } else {
+                hasPending = true;
+                pendingLow = query.low();
+                pendingHigh = query.high();
+                break;
+            }
+        }
+        return Range.create(low, high);
+    }
+
+}
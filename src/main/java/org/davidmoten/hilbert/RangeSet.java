@@ -0,0 +1,491 @@
+package org.davidmoten.hilbert;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.github.davidmoten.guavamini.Lists;
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Immutable set of disjoint ranges held in increasing order in two primitive
+ * arrays. Membership tests are binary searches so keys read back from a scan of
+ * the ranges of a query can be checked cheaply (for example to discard keys
+ * outside the search box when the ranges were merged with {@code maxRanges}).
+ *
+ * <p>
+ * Obtain an instance from {@link Ranges#toRangeSet()} or {@link #create(long[],
+ * long[])}.
+ */
+public final class RangeSet implements Iterable<Range> {
+
+    private final long[] lows;
+    private final long[] highs;
+
+    private RangeSet(long[] lows, long[] highs) {
+        this.lows = lows;
+        this.highs = highs;
+    }
+
+    /**
+     * Returns a RangeSet of the ranges {@code lows[i]} to {@code highs[i]}
+     * (inclusive). The arrays are copied.
+     *
+     * @param lows  low end of each range
+     * @param highs high end of each range
+     * @return set of ranges
+     * @throws IllegalArgumentException if the arrays have different lengths or the
+     *                                  ranges are not in increasing order and
+     *                                  disjoint
+     */
+    public static RangeSet create(long[] lows, long[] highs) {
+        Preconditions.checkArgument(lows.length == highs.length,
+                "lows and highs must have the same length");
+        for (int i = 0; i < lows.length; i++) {
+            Preconditions.checkArgument(lows[i] <= highs[i], "low must be <= high");
+            Preconditions.checkArgument(i == 0 || highs[i - 1] < lows[i],
+                    "ranges must be in increasing order and without overlap");
+        }
+        return new RangeSet(lows.clone(), highs.clone());
+    }
+
+    // the arrays are not copied or checked
+    static RangeSet wrap(long[] lows, long[] highs) {
+        return new RangeSet(lows, highs);
+    }
+
+    public int size() {
+        return lows.length;
+    }
+
+    public long low(int i) {
+        return lows[i];
+    }
+
+    public long high(int i) {
+        return highs[i];
+    }
+
+    /**
+     * Returns true if and only if {@code index} is in one of the ranges.
+     *
+     * @param index value to check
+     * @return true if index is in one of the ranges
+     */
+    public boolean contains(long index) {
+        int i = rangeAtOrAbove(index, 0, lows.length);
+        return i < lows.length && lows[i] <= index;
+    }
+
+    /**
+     * Checks each of {@code keys} for membership and sets bit {@code i} of
+     * {@code out} if {@code keys[i]} is in one of the ranges (otherwise clears it).
+     * The keys need not be sorted but runs of non-decreasing keys are checked
+     * with a forward search from the previous key which is quicker.
+     *
+     * @param keys values to check
+     * @param out  receives the result for each key
+     */
+    public void containsAll(long[] keys, BitSet out) {
+        Cursor cursor = cursor();
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key < previous) {
+                cursor.reset();
+            }
+            out.set(i, cursor.contains(key));
+            previous = key;
+        }
+    }
+
+    /**
+     * Returns a new cursor positioned at the first range. A cursor checks a
+     * non-decreasing sequence of keys in time proportional to the log of the
+     * number of ranges skipped between keys.
+     *
+     * @return new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Moves forward through the ranges of the set for a non-decreasing sequence
+     * of keys (for example keys read from a sorted scan).
+     */
+    // NotThreadSafe
+    public final class Cursor {
+
+        private int position;
+
+        Cursor() {
+        }
+
+        /**
+         * Moves to the first range whose high end is greater than or equal to
+         * {@code key}. Keys passed to successive calls must not decrease (until
+         * {@link #reset()}).
+         *
+         * @param key value to seek to
+         * @return false if there is no such range
+         */
+        public boolean seek(long key) {
+            int n = lows.length;
+            if (position < n && highs[position] < key) {
+                // gallop forward then binary search the last step
+                int step = 1;
+                int from = position + 1;
+                int to = from;
+                while (to < n && highs[to] < key) {
+                    from = to + 1;
+                    to = from + step;
+                    step <<= 1;
+                }
+                position = rangeAtOrAbove(key, from, Math.min(to + 1, n));
+            }
+            return position < n;
+        }
+
+        /**
+         * Returns true if and only if {@code key} is in one of the ranges. Keys
+         * passed to successive calls must not decrease (until {@link #reset()}).
+         *
+         * @param key value to check
+         * @return true if key is in one of the ranges
+         */
+        public boolean contains(long key) {
+            return seek(key) && lows[position] <= key;
+        }
+
+        /**
+         * Returns the low end of the current range. If a key was not contained then
+         * this is the next key that would be.
+         *
+         * @return low end of the current range
+         * @throws NoSuchElementException if the cursor is past the last range
+         */
+        public long low() {
+            checkPosition();
+            return lows[position];
+        }
+
+        /**
+         * Returns the high end of the current range.
+         *
+         * @return high end of the current range
+         * @throws NoSuchElementException if the cursor is past the last range
+         */
+        public long high() {
+            checkPosition();
+            return highs[position];
+        }
+
+        /**
+         * Moves the cursor back to the first range.
+         */
+        public void reset() {
+            position = 0;
+        }
+
+        private void checkPosition() {
+            if (position >= lows.length) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    /**
+     * Returns the union of this set and {@code other}.
+     *
+     * @param other ranges to add
+     * @return union
+     */
+    public RangeSet union(RangeSet other) {
+        Ranges out = new Ranges(0);
+        union(Lists.newArrayList(this, other), out);
+        return out.toRangeSet();
+    }
+
+    /**
+     * Returns the intersection of this set and {@code other}.
+     *
+     * @param other ranges to intersect with
+     * @return intersection
+     */
+    public RangeSet intersection(RangeSet other) {
+        Ranges out = new Ranges(0);
+        intersection(this, other, out);
+        return out.toRangeSet();
+    }
+
+    /**
+     * Returns the values of this set that are not in {@code other}.
+     *
+     * @param other ranges to remove
+     * @return difference
+     */
+    public RangeSet difference(RangeSet other) {
+        Ranges out = new Ranges(0);
+        difference(this, other, out);
+        return out.toRangeSet();
+    }
+
+    /**
+     * Returns the union of all of {@code sets}.
+     *
+     * @param sets sets to combine
+     * @return union
+     */
+    public static RangeSet union(List<RangeSet> sets) {
+        Ranges out = new Ranges(0);
+        union(sets, out);
+        return out.toRangeSet();
+    }
+
+    /**
+     * Adds the union of {@code sets} to {@code out} in increasing order. The sets
+     * are merged with a heap in O(n log k) time for n ranges in k sets and nothing
+     * is allocated per range. Overlapping and adjacent ranges are joined. If
+     * {@code out} has a buffer size (maxRanges) then the union is reduced as it
+     * is produced.
+     *
+     * @param sets sets to combine
+     * @param out  receives the union, must be empty or only hold ranges below the
+     *             union
+     */
+    public static void union(List<RangeSet> sets, Ranges out) {
+        int k = sets.size();
+        RangeSet[] inputs = sets.toArray(new RangeSet[k]);
+        // heap of the inputs ordered by the low of their current range
+        int[] heap = new int[k];
+        int[] positions = new int[k];
+        int size = 0;
+        for (int i = 0; i < k; i++) {
+            if (inputs[i].size() > 0) {
+                heap[size++] = i;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap, size, i, inputs, positions);
+        }
+        Emitter emitter = new Emitter(out);
+        while (size > 0) {
+            int s = heap[0];
+            int p = positions[s]++;
+            emitter.emit(inputs[s].lows[p], inputs[s].highs[p]);
+            if (positions[s] == inputs[s].size()) {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, 0, inputs, positions);
+        }
+        emitter.flush();
+    }
+
+    /**
+     * Adds the intersection of {@code a} and {@code b} to {@code out} in
+     * increasing order in O(n) time without allocating per range. If {@code out}
+     * has a buffer size (maxRanges) then the intersection is reduced as it is
+     * produced.
+     *
+     * @param a   ranges
+     * @param b   ranges
+     * @param out receives the intersection, must be empty or only hold ranges
+     *            below the intersection
+     */
+    public static void intersection(RangeSet a, RangeSet b, Ranges out) {
+        Emitter emitter = new Emitter(out);
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            long low = Math.max(a.lows[i], b.lows[j]);
+            long high = Math.min(a.highs[i], b.highs[j]);
+            if (low <= high) {
+                emitter.emit(low, high);
+            }
+            // the range that ends first cannot overlap anything else
+            if (a.highs[i] < b.highs[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        emitter.flush();
+    }
+
+    /**
+     * Adds the values of {@code a} that are not in {@code b} to {@code out} in
+     * increasing order in O(n) time without allocating per range. If {@code out}
+     * has a buffer size (maxRanges) then the difference is reduced as it is
+     * produced.
+     *
+     * @param a   ranges
+     * @param b   ranges to remove from a
+     * @param out receives the difference, must be empty or only hold ranges below
+     *            the difference
+     */
+    public static void difference(RangeSet a, RangeSet b, Ranges out) {
+        Emitter emitter = new Emitter(out);
+        int j = 0;
+        for (int i = 0; i < a.size(); i++) {
+            long low = a.lows[i];
+            long high = a.highs[i];
+            while (j < b.size() && b.highs[j] < low) {
+                j++;
+            }
+            boolean remaining = true;
+            while (j < b.size() && b.lows[j] <= high) {
+                if (b.lows[j] > low) {
+                    emitter.emit(low, b.lows[j] - 1);
+                }
+                if (b.highs[j] >= high) {
+                    // b[j] covers the rest of a[i] and may overlap a[i + 1]
+                    remaining = false;
+                    break;
+                }
+                low = b.highs[j] + 1;
+                j++;
+            }
+            if (remaining) {
+                emitter.emit(low, high);
+            }
+        }
+        emitter.flush();
+    }
+
+    private static void siftDown(int[] heap, int size, int i, RangeSet[] inputs,
+            int[] positions) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && head(heap[child + 1], inputs, positions) < head(heap[child],
+                    inputs, positions)) {
+                child++;
+            }
+            if (head(heap[i], inputs, positions) <= head(heap[child], inputs, positions)) {
+                return;
+            }
+            int t = heap[i];
+            heap[i] = heap[child];
+            heap[child] = t;
+            i = child;
+        }
+    }
+
+    private static long head(int input, RangeSet[] inputs, int[] positions) {
+        return inputs[input].lows[positions[input]];
+    }
+
+    /**
+     * Passes ranges in order of increasing low to a {@link Ranges} joining
+     * overlapping and adjacent ranges.
+     */
+    private static final class Emitter {
+
+        private final Ranges out;
+        private boolean pending;
+        private long low;
+        private long high;
+
+        Emitter(Ranges out) {
+            this.out = out;
+        }
+
+        void emit(long low, long high) {
+            if (!pending) {
+                pending = true;
+                this.low = low;
+                this.high = high;
+            } else if (this.high == Long.MAX_VALUE || low <= this.high + 1) {
+                this.high = Math.max(this.high, high);
+            } else {
+                out.add(this.low, this.high);
+                this.low = low;
+                this.high = high;
+            }
+        }
+
+        void flush() {
+            if (pending) {
+                out.add(low, high);
+                pending = false;
+            }
+        }
+    }
+
+    // returns the first i in [from, to) with highs[i] >= index or to if none
+    private int rangeAtOrAbove(long index, int from, int to) {
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (highs[mid] < index) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public Iterator<Range> iterator() {
+        return new Iterator<Range>() {
+
+            int i;
+
+            @Override
+            public boolean hasNext() {
+                return i < lows.length;
+            }
+
+            @Override
+            public Range next() {
+                if (i == lows.length) {
+                    throw new NoSuchElementException();
+                }
+                Range r = Range.create(lows[i], highs[i]);
+                i++;
+                return r;
+            }
+
+        };
+    }
+
+    public Stream<Range> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    public List<Range> toList() {
+        return Lists.newArrayList(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(lows) + Arrays.hashCode(highs);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        RangeSet other = (RangeSet) obj;
+        return Arrays.equals(lows, other.lows) && Arrays.equals(highs, other.highs);
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+}
@@ -1,8 +1,9 @@
 package org.davidmoten.hilbert;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -13,120 +14,449 @@ import com.github.davidmoten.guavamini.Preconditions;
  * Adds ranges to a collection and combines ranges optimally when the internal
  * buffer is exceeded.
  * 
+ * <p>
+ * When the buffer is exceeded the two adjacent ranges separated by the smallest
+ * gap are joined (if gaps are equal the lowest pair is joined first). Ranges
+ * are held in parallel primitive arrays linked in index order and the gaps are
+ * kept in an indexed binary min-heap so that adding a range allocates nothing
+ * once the buffer is full.
  */
 // NotThreadSafe
 public class Ranges implements Iterable<Range> {
 
-    private final int bufferSize;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+    private static final int HISTOGRAM_BUCKETS = 64;
 
-    // set is ordered by increasing distance to next node (Node is a linked list)
-    private final TreeSet<Node> set;
+    private int bufferSize;
+
+    // range held in each slot
+    private long[] lows;
+    private long[] highs;
+
+    // the following are only used when bufferSize > 0
+
+    // slots are linked in increasing order of range
+    private int[] above;
+    // gap between the range in a slot and the range above it
+    private long[] gaps;
+    // min-heap of slots ordered by gap then low, every slot except the highest is
+    // present
+    private int[] heap;
+    // position of each slot in the heap
+    private int[] heapPositions;
+    private int heapSize;
+    // slots below this number have been used
+    private int slots;
+    // head of the list of freed slots (linked by above)
+    private int free = NONE;
+
+    // coverage statistics
+    private long exactCells;
+    // number of ranges added (those not present have been merged)
+    private long added;
+    // number of merged gaps by bucket (see mergedGapHistogram), created just
+    // before the first merge
+    private long[] mergedGaps;
 
     // mutable
-    private Node ranges; // in descending order of ranges e.g. Range(5,7) -> Range(1,3)
-    private Node last;
+    private int highest = NONE;
+    private int lowest = NONE;
     private int count; // count of items in ranges
 
     public Ranges(int bufferSize) {
         Preconditions.checkArgument(bufferSize >= 0);
         this.bufferSize = bufferSize;
-        this.ranges = null;
-        if (bufferSize == 0) {
-            // save on allocations
-            this.set = null;
-        } else {
-            this.set = new TreeSet<>();
+        int capacity = bufferSize == 0 ? INITIAL_CAPACITY
+                : (int) Math.min(INITIAL_CAPACITY, bufferSize + 1L);
+        this.lows = new long[capacity];
+        this.highs = new long[capacity];
+        if (bufferSize > 0) {
+            allocateHeap();
         }
     }
 
+    // an instance without a buffer limit that holds exactly the given ranges
+    private Ranges(long[] lows, long[] highs) {
+        this.bufferSize = 0;
+        this.lows = lows;
+        this.highs = highs;
+        this.count = lows.length;
+        this.lowest = count == 0 ? NONE : 0;
+        this.highest = count - 1;
+    }
+
+    /**
+     * Removes all ranges and sets a new buffer size keeping the arrays already
+     * allocated for reuse.
+     *
+     * @param bufferSize the new buffer size
+     */
+    void reset(int bufferSize) {
+        Preconditions.checkArgument(bufferSize >= 0);
+        this.bufferSize = bufferSize;
+        this.count = 0;
+        this.highest = NONE;
+        this.lowest = NONE;
+        this.heapSize = 0;
+        this.slots = 0;
+        this.free = NONE;
+        this.exactCells = 0;
+        this.added = 0;
+        if (mergedGaps != null) {
+            Arrays.fill(mergedGaps, 0);
+        }
+        if (bufferSize > 0 && (heap == null || heap.length != lows.length)) {
+            allocateHeap();
+        }
+    }
+
+    private void allocateHeap() {
+        int capacity = lows.length;
+        this.above = new int[capacity];
+        this.gaps = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+    }
+
     public Ranges add(long low, long high) {
         Preconditions.checkArgument(low <= high);
-        return add(Range.create(low, high));
+        Preconditions.checkArgument(count == 0 || highs[highest] < low,
+                "ranges must be added in increasing order and without overlap");
+        exactCells = saturatedAdd(exactCells, cells(low, high));
+        added++;
+        if (bufferSize == 0) {
+            if (count == lows.length) {
+                grow();
+            }
+            lows[count] = low;
+            highs[count] = high;
+            lowest = 0;
+            highest = count;
+            count++;
+        } else {
+            int slot = allocate();
+            lows[slot] = low;
+            highs[slot] = high;
+            above[slot] = NONE;
+            int previous = highest;
+            highest = slot;
+            count++;
+            if (previous == NONE) {
+                lowest = slot;
+            } else {
+                // the old highest range now has a range above it so has a gap
+                above[previous] = slot;
+                gaps[previous] = low - highs[previous];
+                if (count <= bufferSize) {
+                    heapAdd(previous);
+                } else if (heapSize == 0 || less(previous, heap[0])) {
+                    // the new gap is the smallest so is joined without touching the heap
+                    recordMerge(gaps[previous] - 1);
+                    join(previous);
+                } else {
+                    // replace the smallest gap with the new gap in one pass
+                    int smallest = heap[0];
+                    heap[0] = previous;
+                    heapPositions[previous] = 0;
+                    siftDown(0);
+                    recordMerge(gaps[smallest] - 1);
+                    join(smallest);
+                }
+            }
+        }
+        return this;
     }
 
     public Ranges add(Range r) {
-        Preconditions.checkArgument(ranges == null || ranges.value.high() < r.low(),
-                "ranges must be added in increasing order and without overlap");
-        Node node = new Node(r);
-        count++;
-        if (ranges == null) {
-            ranges = node;
-            last = node;
-        } else if (bufferSize == 0) {
-            node.setNext(ranges);
-            ranges = node;
-        } else {
-            // and set new head and recalculate distance for ranges
-            node.setNext(ranges);
+        return add(r.low(), r.high());
+    }
 
-            // add old head to set (now that the distanceToPrevious has been calculated)
-            set.add(ranges);
+    // joins the range in slot (which is not in the heap) with the range above it
+    private void join(int slot) {
+        int up = above[slot];
+        highs[slot] = highs[up];
+        if (up == highest) {
+            // slot becomes the highest range so has no gap
+            above[slot] = NONE;
+            highest = slot;
+        } else {
+            // slot takes over the gap of the range it absorbed (slot has a lower low
+            // so sorts before up for an equal gap)
+            int upper = above[up];
+            above[slot] = upper;
+            gaps[slot] = gaps[up];
+            int position = heapPositions[up];
+            heap[position] = slot;
+            heapPositions[slot] = position;
+            siftUp(position);
+        }
+        release(up);
+        count--;
+    }
 
-            ranges = node;
+    // only a histogram is updated per merge, the other statistics are derived
+    // when requested
+    private void recordMerge(long gapCells) {
+        mergedGaps[HISTOGRAM_BUCKETS - Long.numberOfLeadingZeros(gapCells)]++;
+    }
 
-            if (count > bufferSize) {
-                // remove node from set with least distance to next node
-                Node first = set.pollFirst();
+    private int allocate() {
+        if (free != NONE) {
+            int slot = free;
+            free = above[slot];
+            return slot;
+        }
+        if (slots == lows.length) {
+            grow();
+        }
+        if (slots == bufferSize && mergedGaps == null) {
+            // this slot takes the count over the buffer size so a merge follows
+            mergedGaps = new long[HISTOGRAM_BUCKETS];
+        }
+        return slots++;
+    }
 
-                // replace that node in linked list (ranges) with a new Node
-                // that has the concatenation of that node with previous node's range
-                // also remove its predecessor. We dont' need to remove the predecessor from the
-                // set because it's distanceToPrevious will remain the same
+    private void release(int slot) {
+        above[slot] = free;
+        free = slot;
+    }
 
-                // first.previous will not be null because distance was present to be in set
-                Range joined = first.value.join(first.previous().value);
-                set.remove(first.previous());
+    private void grow() {
+        int capacity = Math.max(INITIAL_CAPACITY, lows.length * 2);
+        if (bufferSize > 0) {
+            capacity = (int) Math.min(capacity, bufferSize + 1L);
+            above = Arrays.copyOf(above, capacity);
+            gaps = Arrays.copyOf(gaps, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            heapPositions = Arrays.copyOf(heapPositions, capacity);
+        }
+        lows = Arrays.copyOf(lows, capacity);
+        highs = Arrays.copyOf(highs, capacity);
+    }
 
-                Node n = new Node(joined);
-                // link and recalculate distance (won't change because the lower bound of the
-                // new ranges is the same as the lower bound of the range of first)
-                if (first.next() != null) {
-                    n.setNext(first.next());
-                } else {
-                    // first is last in linked list so update last
-                    last = n;
-                }
-                // link and calculate the distance for n
-                Node firstPrevious = first.previous();
-                if (firstPrevious == ranges) {
-                    ranges = n;
-                } else {
-                    first.previous().previous().setNext(n);
-                }
-                set.add(n);
+    private void heapAdd(int slot) {
+        int position = heapSize++;
+        heap[position] = slot;
+        heapPositions[slot] = position;
+        siftUp(position);
+    }
 
-                // clear pointers from first to help gc out
-                // there new gen to old gen promotion can cause problems
-                first.clearForGc();
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parentPosition = (position - 1) >>> 1;
+            int parent = heap[parentPosition];
+            if (!less(slot, parent)) {
+                break;
+            }
+            heap[position] = parent;
+            heapPositions[parent] = position;
+            position = parentPosition;
+        }
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
 
-                // we have reduced number of nodes in list so reduce count
-                count--;
+    private void siftDown(int position) {
+        int slot = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+                child++;
             }
+            int c = heap[child];
+            if (!less(c, slot)) {
+                break;
+            }
+            heap[position] = c;
+            heapPositions[c] = position;
+            position = child;
         }
-        return this;
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+
+    // ordered by gap and then by low
+    private boolean less(int a, int b) {
+        long x = gaps[a];
+        long y = gaps[b];
+        return x < y || (x == y && lows[a] < lows[b]);
     }
 
     @Override
     public Iterator<Range> iterator() {
         return new Iterator<Range>() {
 
-            Node r = last;
+            int slot = lowest;
+            int remaining = count;
 
             @Override
             public boolean hasNext() {
-                return r != null;
+                return remaining > 0;
             }
 
             @Override
             public Range next() {
-                Range v = r.value;
-                r = r.previous();
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                Range v = Range.create(lows[slot], highs[slot]);
+                remaining--;
+                if (bufferSize == 0) {
+                    slot++;
+                } else {
+                    slot = above[slot];
+                }
                 return v;
             }
 
         };
     }
 
+    /**
+     * Returns an immutable copy of the current ranges that supports fast
+     * membership tests.
+     *
+     * @return frozen ranges
+     */
+    public RangeSet toRangeSet() {
+        long[] l = new long[count];
+        long[] h = new long[count];
+        int slot = lowest;
+        for (int i = 0; i < count; i++) {
+            l[i] = lows[slot];
+            h[i] = highs[slot];
+            slot = bufferSize == 0 ? slot + 1 : above[slot];
+        }
+        return RangeSet.wrap(l, h);
+    }
+
+    /**
+     * Returns the number of cells (index values) covered by the ranges. This is
+     * the number of exact cells plus the cells in the gaps that were merged to
+     * keep within the buffer size. The count saturates at
+     * {@code Long.MAX_VALUE} (the whole of a 63 bit curve has 2<sup>63</sup>
+     * cells).
+     *
+     * @return cells covered
+     */
+    public long coveredCells() {
+        long cells = 0;
+        int slot = lowest;
+        for (int i = 0; i < count; i++) {
+            cells = saturatedAdd(cells, cells(lows[slot], highs[slot]));
+            slot = bufferSize == 0 ? slot + 1 : above[slot];
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the number of cells in the ranges as they were added. For the result
+     * of an exact query (or one reduced to {@code maxRanges}) this is the number of
+     * cells inside the search region. {@code queryApproximate} adds coarse ranges
+     * so sets this to the number of cells in the search box instead. The count
+     * saturates at {@code Long.MAX_VALUE}.
+     *
+     * @return exact cells
+     */
+    public long exactCells() {
+        return exactCells;
+    }
+
+    void exactCells(long exactCells) {
+        this.exactCells = exactCells;
+    }
+
+    /**
+     * Returns the ratio of covered cells to exact cells. A value of 1 means no
+     * gaps were merged and 2 means that half of the cells scanned using these
+     * ranges would be outside the search region.
+     *
+     * @return over-coverage ratio (1 if there are no ranges)
+     */
+    public double overCoverage() {
+        return exactCells == 0 ? 1 : (double) coveredCells() / exactCells;
+    }
+
+    /**
+     * Returns the number of gaps merged to keep within the buffer size.
+     *
+     * @return number of merged gaps
+     */
+    public long mergedGapCount() {
+        return added - count;
+    }
+
+    /**
+     * Returns a histogram of the sizes of the merged gaps in powers of 2. Element
+     * 0 counts gaps of 0 cells (adjacent ranges) and element {@code i > 0} counts
+     * gaps of 2<sup>i-1</sup> to 2<sup>i</sup>-1 cells.
+     *
+     * @return new array of 64 counts
+     */
+    public long[] mergedGapHistogram() {
+        if (mergedGaps != null) {
+            return mergedGaps.clone();
+        } else {
+            return new long[HISTOGRAM_BUCKETS];
+        }
+    }
+
+    // cells from low to high inclusive saturating at Long.MAX_VALUE
+    static long cells(long low, long high) {
+        long d = high - low;
+        return d == Long.MAX_VALUE ? d : d + 1;
+    }
+
+    // sum of two non-negative counts saturating at Long.MAX_VALUE
+    static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Returns a copy of the current ranges in arrays of exactly the right size.
+     * Ranges added to the copy are not combined (as if it had a buffer size of
+     * 0). The coverage statistics are copied.
+     *
+     * @return copy of the current ranges
+     */
+    Ranges copy() {
+        long[] l = new long[count];
+        long[] h = new long[count];
+        int slot = lowest;
+        for (int i = 0; i < count; i++) {
+            l[i] = lows[slot];
+            h[i] = highs[slot];
+            slot = bufferSize == 0 ? slot + 1 : above[slot];
+        }
+        Ranges copy = new Ranges(l, h);
+        copy.exactCells = exactCells;
+        copy.added = added;
+        if (mergedGapCount() > 0) {
+            copy.mergedGaps = mergedGaps.clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Passes each range in increasing order to {@code consumer} without creating
+     * {@link Range} objects.
+     *
+     * @param consumer receives the ranges
+     */
+    void visit(RangeConsumer consumer) {
+        int slot = lowest;
+        for (int i = 0; i < count; i++) {
+            consumer.accept(lows[slot], highs[slot]);
+            slot = bufferSize == 0 ? slot + 1 : above[slot];
+        }
+    }
+
     public Stream<Range> stream() {
         return StreamSupport.stream(this.spliterator(), false);
     }
@@ -1,8 +1,19 @@
 package org.davidmoten.hilbert;
 
+import java.nio.LongBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.github.davidmoten.guavamini.Preconditions;
 
@@ -18,16 +29,18 @@ import com.github.davidmoten.guavamini.Preconditions;
  */
 public final class SmallHilbertCurve {
 
-    private static final int DEFAULT_BUFFER_SIZE = 1024;
-
     private final int bits;
     private final int dimensions;
-    private final int length;
+    // table driven engine for 2 and 3 dimensions, null otherwise
+    private final StateTable table;
+    // null when queries are not instrumented
+    private final QueryListener listener;
 
-    private SmallHilbertCurve(int bits, int dimensions) {
+    private SmallHilbertCurve(int bits, int dimensions, QueryListener listener) {
         this.bits = bits;
         this.dimensions = dimensions;
-        this.length = bits * dimensions;
+        this.table = StateTable.forDimensions(dimensions);
+        this.listener = listener;
     }
 
     public int bits() {
@@ -38,6 +51,25 @@ public final class SmallHilbertCurve {
         return dimensions;
     }
 
+    /**
+     * Returns a curve like this one whose Perimeter Algorithm queries (the
+     * {@code query} methods for a single box and {@link QueryContext}) report the
+     * time and size of each phase to {@code listener}. Use
+     * {@link QueryListener#flightRecorder()} to record JDK Flight Recorder events.
+     * Curves are not instrumented by default and then pay nothing for it.
+     * 
+     * @param listener receives the phases of each query
+     * @return instrumented curve
+     */
+    public SmallHilbertCurve withListener(QueryListener listener) {
+        Preconditions.checkNotNull(listener);
+        return new SmallHilbertCurve(bits, dimensions, listener);
+    }
+
+    QueryListener listener() {
+        return listener;
+    }
+
     /**
      * Converts a point to its Hilbert curve index.
      * 
@@ -50,7 +82,81 @@ public final class SmallHilbertCurve {
      */
     public long index(long... point) {
         Preconditions.checkArgument(point.length == dimensions);
-        return toIndex(HilbertCurve.transposedIndex(bits, point));
+        if (table != null) {
+            return table.index(toIndex(point), bits);
+        } else {
+            return toIndex(HilbertCurve.transposedIndex(bits, point));
+        }
+    }
+
+    // x is mutated
+    private long indexInPlace(long[] x) {
+        if (table != null) {
+            return table.index(toIndex(x), bits);
+        } else {
+            return toIndex(HilbertCurve.transposedIndexInPlace(bits, x));
+        }
+    }
+
+    /**
+     * Converts a batch of points to their Hilbert curve indexes without allocating
+     * per point. The points are packed into {@code points} with a stride of
+     * {@link #dimensions()} so that point {@code i} occupies
+     * {@code points[i * dimensions]} to
+     * {@code points[i * dimensions + dimensions - 1]}. The index of point
+     * {@code i} is written to {@code out[i]}.
+     * 
+     * @param points packed ordinates of the points
+     * @param from   the position of the first point to convert (in points, not
+     *               ordinates)
+     * @param count  the number of points to convert
+     * @param out    destination of the indexes
+     * @throws IllegalArgumentException if the points or the indexes would fall
+     *                                  outside of the arrays
+     */
+    public void index(long[] points, int from, int count, long[] out) {
+        checkBatch(points.length, from, count, out.length);
+        long[] x = new long[dimensions];
+        for (int i = from; i < from + count; i++) {
+            System.arraycopy(points, i * dimensions, x, 0, dimensions);
+            out[i] = indexInPlace(x);
+        }
+    }
+
+    /**
+     * Converts a batch of points to their Hilbert curve indexes without allocating
+     * per point. The layout is as per {@link #index(long[], int, int, long[])}
+     * with ordinates read by absolute position so the position of {@code points}
+     * is not changed. To read from a {@link java.nio.ByteBuffer} use
+     * {@link java.nio.ByteBuffer#asLongBuffer()}.
+     * 
+     * @param points packed ordinates of the points
+     * @param from   the position of the first point to convert (in points, not
+     *               ordinates)
+     * @param count  the number of points to convert
+     * @param out    destination of the indexes
+     * @throws IllegalArgumentException if the points or the indexes would fall
+     *                                  outside of the buffer or array
+     */
+    public void index(LongBuffer points, int from, int count, long[] out) {
+        checkBatch(points.limit(), from, count, out.length);
+        long[] x = new long[dimensions];
+        for (int i = from; i < from + count; i++) {
+            int offset = i * dimensions;
+            for (int j = 0; j < dimensions; j++) {
+                x[j] = points.get(offset + j);
+            }
+            out[i] = indexInPlace(x);
+        }
+    }
+
+    private void checkBatch(long pointsLength, int from, int count, int indexesLength) {
+        Preconditions.checkArgument(from >= 0, "from cannot be negative");
+        Preconditions.checkArgument(count >= 0, "count cannot be negative");
+        Preconditions.checkArgument(((long) from + count) * dimensions <= pointsLength,
+                "points array is too small");
+        Preconditions.checkArgument((long) from + count <= indexesLength,
+                "indexes array is too small");
     }
 
     /**
@@ -63,55 +169,225 @@ public final class SmallHilbertCurve {
      * @throws IllegalArgumentException if index is negative
      */
     public long[] point(long index) {
-        return HilbertCurve.transposedIndexToPoint(bits, transposeLong(index));
+        long[] x = new long[dimensions];
+        point(index, x);
+        return x;
     }
 
     public void point(long index, long[] x) {
-        Util.zero(x);
-        transposeLong(index, x);
-        HilbertCurve.transposedIndexToPoint(bits, x);
+        if (table != null) {
+            transposeLong(table.point(index, bits), x);
+        } else {
+            transposeLong(index, x);
+            HilbertCurve.transposedIndexToPoint(bits, x);
+        }
+    }
+
+    /**
+     * Returns a cursor over the points with indexes from {@code low} to
+     * {@code high} inclusive in index order. Each step costs O(1) amortized
+     * rather than a full decode as with {@link #point(long, long[])}.
+     * 
+     * @param low  the first index
+     * @param high the last index
+     * @return cursor positioned before the point at {@code low}
+     * @throws IllegalArgumentException if {@code low} is negative, {@code high} is
+     *                                  greater than {@link #maxIndex()} or
+     *                                  {@code low > high}
+     */
+    public Walk walk(long low, long high) {
+        Preconditions.checkArgument(low >= 0, "low cannot be negative");
+        Preconditions.checkArgument(low <= high, "low must be less than or equal to high");
+        Preconditions.checkArgument(high <= maxIndex(), "high cannot be greater than maxIndex");
+        return new Walk(bits, dimensions, low, high);
+    }
+
+    public Walk walk(Range range) {
+        return walk(range.low(), range.high());
+    }
+
+    /**
+     * Calls {@code consumer} with each point that has an index from {@code low}
+     * to {@code high} inclusive in index order. The point array passed to the
+     * consumer is reused for every call.
+     * 
+     * @param low      the first index
+     * @param high     the last index
+     * @param consumer receives each index and point
+     */
+    public void forEach(long low, long high, PointConsumer consumer) {
+        walk(low, high).forEach(consumer);
+    }
+
+    public void forEach(Range range, PointConsumer consumer) {
+        forEach(range.low(), range.high(), consumer);
+    }
+
+    /**
+     * Returns a new {@link Encoder} that owns the scratch space needed to convert
+     * points to indexes without allocating. An encoder should not be shared
+     * between threads.
+     * 
+     * @return new encoder
+     */
+    public Encoder encoder() {
+        return new Encoder(this);
+    }
+
+    /**
+     * Returns a new {@link QueryContext} that keeps the buffers used by
+     * {@link #query(long[], long[], int)} between queries so that repeated queries
+     * allocate little or nothing. A context should not be shared between threads.
+     * 
+     * @return new query context
+     */
+    public QueryContext queryContext() {
+        return new QueryContext(this);
+    }
+
+    /**
+     * Returns a new {@link Decoder} that converts indexes to points without
+     * allocating. A decoder should not be shared between threads.
+     * 
+     * @return new decoder
+     */
+    public Decoder decoder() {
+        return new Decoder(this);
     }
 
-    // untranspose
+    /**
+     * Converts points to indexes without allocating.
+     */
+    // NotThreadSafe
+    public static final class Encoder {
+
+        private final SmallHilbertCurve curve;
+        private final long[] x;
+
+        Encoder(SmallHilbertCurve curve) {
+            this.curve = curve;
+            this.x = new long[curve.dimensions];
+        }
+
+        /**
+         * Converts a point to its Hilbert curve index.
+         * 
+         * @param point an array of {@code long}. Each ordinate can be between 0 and
+         *              2<sup>bits</sup>-1.
+         * @return index {@code long} in the range 0 to 2<sup>bits *
+         *         dimensions</sup> - 1
+         * @throws IllegalArgumentException if length of point array is not equal to
+         *                                  the number of dimensions.
+         */
+        public long encode(long[] point) {
+            Preconditions.checkArgument(point.length == x.length);
+            if (curve.table != null) {
+                // the table reads the point without modifying it so no copy is needed
+                return curve.table.index(curve.toIndex(point), curve.bits);
+            }
+            System.arraycopy(point, 0, x, 0, x.length);
+            return curve.indexInPlace(x);
+        }
+    }
+
+    /**
+     * Converts indexes to points without allocating.
+     */
+    // NotThreadSafe
+    public static final class Decoder {
+
+        private final SmallHilbertCurve curve;
+
+        Decoder(SmallHilbertCurve curve) {
+            this.curve = curve;
+        }
+
+        /**
+         * Writes the point at {@code index} to {@code point}.
+         * 
+         * @param index index along the Hilbert Curve from 0
+         * @param point receives the point
+         * @throws IllegalArgumentException if length of point array is not equal to
+         *                                  the number of dimensions.
+         */
+        public void decode(long index, long[] point) {
+            Preconditions.checkArgument(point.length == curve.dimensions);
+            curve.point(index, point);
+        }
+    }
+
+    /**
+     * Converts a batch of indexes to points without allocating per index. The
+     * point for {@code indexes[i]} is written to {@code out} with a stride of
+     * {@link #dimensions()} so that it occupies {@code out[i * dimensions]} to
+     * {@code out[i * dimensions + dimensions - 1]}.
+     * 
+     * @param indexes indexes along the Hilbert Curve
+     * @param from    the position of the first index to convert
+     * @param count   the number of indexes to convert
+     * @param out     destination of the packed ordinates
+     * @throws IllegalArgumentException if the indexes or the points would fall
+     *                                  outside of the arrays
+     */
+    public void points(long[] indexes, int from, int count, long[] out) {
+        checkBatch(out.length, from, count, indexes.length);
+        long[] x = new long[dimensions];
+        for (int i = from; i < from + count; i++) {
+            point(indexes[i], x);
+            System.arraycopy(x, 0, out, i * dimensions, dimensions);
+        }
+    }
+
+    /**
+     * Converts a batch of indexes to points without allocating per index. The
+     * points are written in a column layout so that ordinate {@code j} of the point
+     * for {@code indexes[i]} is written to {@code columns[j][i]}.
+     * 
+     * @param indexes indexes along the Hilbert Curve
+     * @param from    the position of the first index to convert
+     * @param count   the number of indexes to convert
+     * @param columns destination of the ordinates, one array per dimension
+     * @throws IllegalArgumentException if the number of columns is not equal to
+     *                                  the number of dimensions or the indexes or
+     *                                  the points would fall outside of the arrays
+     */
+    public void points(long[] indexes, int from, int count, long[][] columns) {
+        Preconditions.checkArgument(columns.length == dimensions,
+                "number of columns must equal the number of dimensions");
+        for (long[] column : columns) {
+            checkBatch((long) column.length * dimensions, from, count, indexes.length);
+        }
+        long[] x = new long[dimensions];
+        for (int i = from; i < from + count; i++) {
+            point(indexes[i], x);
+            for (int j = 0; j < dimensions; j++) {
+                columns[j][i] = x[j];
+            }
+        }
+    }
+
+    // untranspose (also interleaves the ordinates of a point for the table engine)
     private long toIndex(long... transposedIndex) {
         long b = 0;
-        int bIndex = length - 1;
-        long mask = 1L << (bits - 1);
-        for (int i = 0; i < bits; i++) {
-            for (int j = 0; j < transposedIndex.length; j++) {
-                if ((transposedIndex[j] & mask) != 0) {
-                    b |= 1L << bIndex;
-                }
-                bIndex--;
-            }
-            mask >>= 1;
+        for (int j = 0; j < dimensions; j++) {
+            b |= Bits.spread(transposedIndex[j], dimensions) << (dimensions - 1 - j);
         }
         // b is expected to be BigEndian
         return b;
     }
 
     private void transposeLong(long index, long[] x) {
-        for (int idx = 0; idx < 64; idx++) {
-            if ((index & (1L << idx)) != 0) {
-                int dim = (length - idx - 1) % dimensions;
-                int shift = (idx / dimensions) % bits;
-                x[dim] |= 1L << shift;
-            }
+        for (int j = 0; j < dimensions; j++) {
+            x[j] = Bits.compact(index >>> (dimensions - 1 - j), dimensions);
         }
     }
 
-    private long[] transposeLong(long index) {
-        long[] x = new long[dimensions];
-        transposeLong(index, x);
-        return x;
-    }
-
     public long maxOrdinate() {
-        return (1 << bits) - 1;
+        return (1L << bits) - 1;
     }
 
     public long maxIndex() {
-        return (1 << (bits * dimensions)) - 1;
+        return (1L << (bits * dimensions)) - 1;
     }
 
     /////////////////////////////////////////////////
@@ -128,7 +404,7 @@ public final class SmallHilbertCurve {
      * @return ranges
      */
     public Ranges query(long[] a, long[] b) {
-        return query(a, b, 0, 0);
+        return query(a, b, 0);
     }
 
     /**
@@ -136,7 +412,7 @@ public final class SmallHilbertCurve {
      * The list will be in increasing order of the range bounds (there should be no
      * overlaps). The index ranges may cover a larger region than the search box
      * because the set of exact covering ranges will have been reduced by joining
-     * ranges with minimal gaps. The buffer size used by this method is 1024.
+     * ranges with minimal gaps.
      * 
      * @param a         one vertex of the region
      * @param b         the opposing vertex to a
@@ -145,89 +421,423 @@ public final class SmallHilbertCurve {
      * @return ranges
      */
     public Ranges query(long[] a, long[] b, int maxRanges) {
-        if (maxRanges == 0) {
-            return query(a, b, 0, 0);
-        } else {
-            return query(a, b, maxRanges, Math.max(DEFAULT_BUFFER_SIZE, maxRanges));
+        Preconditions.checkArgument(maxRanges >= 0);
+        // this is the implementation of the Perimeter Algorithm mentioned in README.md
+
+        Box box = new Box(a, b);
+        QueryBuffers buffers = QueryBuffers.acquire();
+        try {
+            LongList list = buffers.indexes;
+            if (listener != null) {
+                return queryInstrumented(box, list, maxRanges);
+            }
+            box.visitPerimeter(encoder()::encode, list::add);
+            list.sort(bits * dimensions);
+            return ranges(list.array(), list.size(), box::contains, maxRanges);
+        } finally {
+            buffers.release();
         }
     }
 
     /**
-     * Returns index ranges covering the region bounded by {@code a} and {@code b}.
-     * The list will be in increasing order of the range bounds (there should be no
-     * overlaps). The index ranges may cover a larger region than the search box
-     * because the set of exact covering ranges will have been reduced by joining
-     * ranges with minimal gaps. A buffer of ranges is used and has a size that is
-     * generally speaking a fair bit larger than maxRanges to increase the
-     * probability that minimal extra coverage be returned.
+     * Returns the same ranges as {@link #query(long[], long[], int)}.
      * 
      * @param a          one vertex of the region
      * @param b          the opposing vertex to a
      * @param maxRanges  the maximum number of ranges to be returned. If 0 then all
      *                   ranges are returned.
-     * @param bufferSize the buffer size of ranges to use. A larger buffer size will
-     *                   increase the probability that ranges have been joined
-     *                   optimally (we want to join ranges that have minimal gaps to
-     *                   minimize the resultant extra coverage). If 0 is passed to
-     *                   bufferSize then all ranges will be buffered before
-     *                   shrinking to maxRanges.
+     * @param bufferSize must be at least maxRanges but otherwise has no effect
      * @return ranges
+     * @deprecated ranges are joined in order of smallest gap as they are found so
+     *             the result is the same for any buffer size and no more than
+     *             maxRanges ranges are buffered. Use
+     *             {@link #query(long[], long[], int)}.
      */
+    @Deprecated
     public Ranges query(long[] a, long[] b, int maxRanges, int bufferSize) {
-        Preconditions.checkArgument(maxRanges >= 0);
+        checkBufferSize(maxRanges, bufferSize);
+        return query(a, b, maxRanges);
+    }
+
+    private static void checkBufferSize(int maxRanges, int bufferSize) {
         Preconditions.checkArgument(bufferSize >= maxRanges,
                 "bufferSize must be greater than or equal to maxRanges");
-        if (maxRanges == 0) {
-            // unlimited
-            bufferSize = 0;
+    }
+
+    // as per query(a, b, maxRanges) reporting each phase to the listener
+    private Ranges queryInstrumented(Box box, LongList list, int maxRanges) {
+        long start = System.nanoTime();
+        box.visitPerimeter(encoder()::encode, list::add);
+        long visited = System.nanoTime();
+        listener.perimeterVisited(list.size(), visited - start);
+        list.sort(bits * dimensions);
+        long sorted = System.nanoTime();
+        listener.perimeterSorted(list.size(), sorted - visited);
+        Ranges ranges = ranges(list.array(), list.size(), box::contains, maxRanges);
+        report(listener, ranges, System.nanoTime() - sorted);
+        return ranges;
+    }
+
+    static void report(QueryListener listener, Ranges ranges, long nanos) {
+        long mergedGaps = ranges.mergedGapCount();
+        listener.rangesBuilt(ranges.size() + mergedGaps, nanos);
+        listener.rangesMerged(mergedGaps, ranges.size(), ranges.exactCells(),
+                ranges.coveredCells());
+    }
+
+    /**
+     * Returns the index ranges covering the region bounded by {@code a} and
+     * {@code b} combined as far as minimizes the cost estimated by {@code cost}.
+     * The exact ranges are found first and then every possible number of ranges
+     * is costed using the exact number of cells each combination scans (ranges
+     * are combined across the smallest gaps first as in
+     * {@link #query(long[], long[], int)}). The result holds the same ranges as
+     * {@code query(a, b, result.rangeCount())}.
+     * 
+     * <p>
+     * For example with {@code QueryCost.linear(costPerRange, costPerCell)} two
+     * ranges are joined exactly when the gap between them costs less to scan than
+     * an extra seek.
+     * 
+     * @param a    one vertex of the region
+     * @param b    the opposing vertex to a
+     * @param cost estimates the cost of scanning a number of ranges covering a
+     *             number of cells
+     * @return the chosen ranges with their count, covered cells and estimated cost
+     */
+    public CostedRanges query(long[] a, long[] b, QueryCost cost) {
+        Preconditions.checkNotNull(cost);
+        return CostedRanges.choose(query(a, b), cost);
+    }
+
+    /**
+     * Runs {@link #query(long[], long[], int)} as a task on {@code executor}.
+     * Concurrent queries reuse scratch buffers from a shared pool so apart from
+     * the result little is allocated per query.
+     * 
+     * @param a         one vertex of the region
+     * @param b         the opposing vertex to a
+     * @param maxRanges the maximum number of ranges to be returned. If 0 then all
+     *                  ranges are returned.
+     * @param executor  runs the query
+     * @return future ranges
+     */
+    public CompletableFuture<Ranges> queryAsync(long[] a, long[] b, int maxRanges,
+            Executor executor) {
+        Preconditions.checkArgument(maxRanges >= 0);
+        Preconditions.checkNotNull(executor);
+        return CompletableFuture.supplyAsync(() -> query(a, b, maxRanges), executor);
+    }
+
+    /**
+     * Runs an independent {@link #query(long[], long[], int)} for each box as a
+     * task on {@code executor} (unlike {@link #query(List, int)} which covers the
+     * union of the boxes with one set of ranges). Concurrent queries reuse scratch
+     * buffers from a shared pool.
+     * 
+     * @param boxes     boxes where each box is two opposing vertices
+     *                  {@code {a, b}}
+     * @param maxRanges the maximum number of ranges to be returned for each box.
+     *                  If 0 then all ranges are returned.
+     * @param executor  runs the queries
+     * @return future ranges for each box in the same order as {@code boxes}
+     */
+    public List<CompletableFuture<Ranges>> queryAll(List<long[][]> boxes, int maxRanges,
+            Executor executor) {
+        Preconditions.checkArgument(maxRanges >= 0);
+        Preconditions.checkNotNull(executor);
+        List<CompletableFuture<Ranges>> list = new ArrayList<>(boxes.size());
+        for (long[][] box : boxes) {
+            Preconditions.checkArgument(box.length == 2, "a box must be two vertices");
+            list.add(queryAsync(box[0], box[1], maxRanges, executor));
         }
-        // this is the implementation of the Perimeter Algorithm mentioned in README.md
+        return list;
+    }
+
+    /**
+     * Returns index ranges covering the union of the given boxes. The perimeter
+     * cells of all the boxes are encoded into one buffer and sorted once, cells
+     * shared by overlapping boxes are counted once and {@code maxRanges} applies
+     * to the combined result (not to each box). With {@code maxRanges} of 0 the
+     * ranges exactly cover the union.
+     * 
+     * @param boxes     boxes where each box is two opposing vertices
+     *                  {@code {a, b}}
+     * @param maxRanges the maximum number of ranges to be returned. If 0 then all
+     *                  ranges are returned.
+     * @return ranges
+     */
+    public Ranges query(List<long[][]> boxes, int maxRanges) {
+        Preconditions.checkArgument(maxRanges >= 0);
+        int n = boxes.size();
+        long[][] mins = new long[n][];
+        long[][] maxes = new long[n][];
+        for (int i = 0; i < n; i++) {
+            long[][] box = boxes.get(i);
+            Preconditions.checkArgument(box.length == 2, "a box must be two vertices");
+            Preconditions.checkArgument(
+                    box[0].length == dimensions && box[1].length == dimensions,
+                    "vertices must have the same number of dimensions as the curve");
+            Box b = new Box(box[0], box[1]);
+            mins[i] = b.mins();
+            maxes[i] = b.maxes();
+        }
+        QueryBuffers buffers = QueryBuffers.acquire();
+        try {
+            return query(mins, maxes, maxRanges, buffers.indexes);
+        } finally {
+            buffers.release();
+        }
+    }
+
+    private Ranges query(long[][] mins, long[][] maxes, int maxRanges, LongList indexes) {
+        int n = mins.length;
+        Encoder encoder = encoder();
+        // Every range of the union starts and ends on a cell that is on the
+        // perimeter of one of the boxes but not strictly inside any other box (its
+        // neighbour on the curve is outside the union) so only those cells are
+        // encoded. The Perimeter Algorithm then applies to the union unchanged.
+        for (int i = 0; i < n; i++) {
+            int[] others = overlapping(mins, maxes, i);
+            ToLongFunction<long[]> encode = cell -> Box.insideAny(mins, maxes, others, cell) ? -1
+                    : encoder.encode(cell);
+            new Box(mins[i], maxes[i]).visitPerimeter(encode, index -> {
+                if (index >= 0) {
+                    indexes.add(index);
+                }
+            });
+        }
+        indexes.sort(bits * dimensions);
+        // cells on the perimeter of more than one box
+        indexes.distinct();
+        return ranges(indexes.array(), indexes.size(),
+                point -> Box.containsAny(mins, maxes, point), maxRanges);
+    }
+
+    // returns the boxes other than box i that intersect box i
+    private static int[] overlapping(long[][] mins, long[][] maxes, int i) {
+        int[] result = new int[mins.length];
+        int count = 0;
+        for (int k = 0; k < mins.length; k++) {
+            if (k != i && Box.intersects(mins[i], maxes[i], mins[k], maxes[k])) {
+                result[count++] = k;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * As per {@link #query(long[], long[], int)} but the perimeter cells are
+     * enumerated and encoded in parallel on {@link ForkJoinPool#commonPool()}.
+     * The ranges are identical to those returned by
+     * {@link #query(long[], long[], int)}.
+     * 
+     * @param a         one vertex of the region
+     * @param b         the opposing vertex to a
+     * @param maxRanges the maximum number of ranges to be returned. If 0 then all
+     *                  ranges are returned.
+     * @return ranges
+     */
+    public Ranges queryParallel(long[] a, long[] b, int maxRanges) {
+        return queryParallel(a, b, maxRanges, ForkJoinPool.commonPool());
+    }
 
+    /**
+     * As per {@link #query(long[], long[], int)} but the faces of the region
+     * (split into slabs when large) are enumerated and encoded as separate tasks on
+     * {@code executor}. The sorted indexes of each task are merged before ranges
+     * are built so the result is identical to that of
+     * {@link #query(long[], long[], int)} whatever the number of threads.
+     * 
+     * <p>
+     * The calling thread blocks until the tasks complete. Do not call this
+     * method from a task running on {@code executor} when {@code executor} has a
+     * bounded number of threads (other than a {@link ForkJoinPool}) because the
+     * tasks may never get a thread. Use
+     * {@link #queryParallelAsync(long[], long[], int, Executor)} there instead.
+     * 
+     * @param a         one vertex of the region
+     * @param b         the opposing vertex to a
+     * @param maxRanges the maximum number of ranges to be returned. If 0 then all
+     *                  ranges are returned.
+     * @param executor  runs the encoding tasks
+     * @return ranges
+     */
+    public Ranges queryParallel(long[] a, long[] b, int maxRanges, Executor executor) {
+        return queryParallelAsync(a, b, maxRanges, executor).join();
+    }
+
+    /**
+     * As per {@link #queryParallel(long[], long[], int, Executor)} but returns
+     * without waiting for the encoding tasks. The ranges are built by the thread
+     * that completes the last task so no thread blocks and the query can be
+     * started from a task running on {@code executor}.
+     * 
+     * @param a         one vertex of the region
+     * @param b         the opposing vertex to a
+     * @param maxRanges the maximum number of ranges to be returned. If 0 then all
+     *                  ranges are returned.
+     * @param executor  runs the encoding tasks
+     * @return future ranges
+     */
+    public CompletableFuture<Ranges> queryParallelAsync(long[] a, long[] b, int maxRanges,
+            Executor executor) {
+        Preconditions.checkArgument(maxRanges >= 0);
+        Preconditions.checkNotNull(executor);
         Box box = new Box(a, b);
-        List<Long> list = new ArrayList<>();
-        box.visitPerimeter(cell -> {
-            long n = index(cell);
-            list.add(n);
-        });
-        Collections.sort(list);
-        int i = 0;
-        Ranges ranges = new Ranges(bufferSize);
+        return ParallelPerimeter.sortedIndexes(this, box.mins(), box.maxes(), executor)
+                .thenApply(indexes -> ranges(indexes, indexes.length, box::contains, maxRanges));
+    }
+
+    // builds the ranges from the sorted distinct indexes of the perimeter of the
+    // region where inside tests if a point is in the region
+    private Ranges ranges(long[] indexes, int size, Predicate<long[]> inside,
+            int maxRanges) {
+        Ranges ranges = new Ranges(maxRanges);
+        ranges(indexes, size, inside, new long[dimensions], ranges);
+        return ranges;
+    }
+
+    // as above but adds to the given ranges using point as scratch space
+    void ranges(long[] indexes, int size, Predicate<long[]> inside, long[] point,
+            Ranges ranges) {
         long rangeStart = -1;
-        while (true) {
-            if (i == list.size()) {
-                break;
-            }
+        int i = 0;
+        while (i < size) {
             if (rangeStart == -1) {
-                rangeStart = list.get(i);
+                rangeStart = indexes[i];
             }
-            while (i < list.size() - 1 && list.get(i + 1) == list.get(i) + 1) {
+            while (i < size - 1 && indexes[i + 1] == indexes[i] + 1) {
                 i++;
             }
-            if (i == list.size() - 1) {
-                ranges.add(Range.create(rangeStart, list.get(i)));
+            if (i == size - 1) {
+                ranges.add(rangeStart, indexes[i]);
                 break;
             }
-            long[] point = point(list.get(i) + 1);
-            if (box.contains(point)) {
-                // is not on the perimeter (would have been caught in previous while loop)
-                // so is internal to the box which means the next value in the sorted hilbert
-                // curve indexes for the perimiter must be where it exits
-                i += 1;
-            } else {
-                ranges.add(Range.create(rangeStart, list.get(i)));
+            point(indexes[i] + 1, point);
+            if (!inside.test(point)) {
+                ranges.add(rangeStart, indexes[i]);
                 rangeStart = -1;
-                i++;
             }
+            // otherwise the next index is internal to the region so the next value in the
+            // sorted perimeter indexes must be where it exits
+            i++;
         }
-        if (ranges.size() <= maxRanges) {
-            return ranges;
-        } else {
-            Ranges r = new Ranges(maxRanges);
-            for (Range range : ranges) {
-                r.add(range);
-            }
-            return r;
+    }
+
+
+    /**
+     * Returns index ranges exactly covering the region bounded by {@code a} and
+     * {@code b} using the Subdivision Algorithm (see README.md). The result is the
+     * same as {@link #query(long[], long[])} but the work done depends on the
+     * number of ranges rather than on the surface area of the region which suits
+     * large regions.
+     * 
+     * @param a one vertex of the region
+     * @param b the opposing vertex to a
+     * @return ranges
+     * @throws IllegalArgumentException if the region overlaps more than 2^30 of
+     *                                  the children of one sub-cube (only
+     *                                  possible with more than 30 dimensions)
+     */
+    public Ranges querySubdivision(long[] a, long[] b) {
+        return querySubdivision(a, b, 0);
+    }
+
+    /**
+     * As per {@link #query(long[], long[], int)} but using the Subdivision
+     * Algorithm (see README.md).
+     * 
+     * @param a         one vertex of the region
+     * @param b         the opposing vertex to a
+     * @param maxRanges the maximum number of ranges to be returned. If 0 then all
+     *                  ranges are returned.
+     * @return ranges
+     */
+    public Ranges querySubdivision(long[] a, long[] b, int maxRanges) {
+        Preconditions.checkArgument(maxRanges >= 0);
+        Box box = new Box(a, b);
+        SubdivisionQuery q = new SubdivisionQuery(bits, dimensions, box.mins(), box.maxes());
+        return ranges(q, maxRanges);
+    }
+
+    /**
+     * Returns index ranges covering the region bounded by {@code a} and {@code b}
+     * computed only down to the given depth of the curve. The Subdivision
+     * Algorithm (see README.md) stops at sub-cubes of side
+     * 2<sup>bits - depth</sup> and any such sub-cube that overlaps the region is
+     * covered as a whole, so the finer structure of the boundary is never computed
+     * and the time taken is bounded by the depth rather than by the size of the
+     * region.
+     * 
+     * <p>
+     * The ranges cover exactly the cells of the region snapped outwards to
+     * multiples of the sub-cube side {@code s = 2^(bits - depth)}, that is
+     * 
+     * <pre>
+     * product over j of (ceil((max[j] + 1) / s) - floor(min[j] / s)) * s
+     * </pre>
+     * 
+     * cells where {@code min} and {@code max} are the corners of the region. The
+     * over-coverage is therefore at most {@code s - 1} cells (less than {@code s})
+     * beyond the region on each side of each axis. A depth of {@code bits} gives the exact ranges.
+     * 
+     * @param a     one vertex of the region
+     * @param b     the opposing vertex to a
+     * @param depth the number of levels of the curve to descend, between 0 (one
+     *              range covering the whole curve) and {@code bits} (exact)
+     * @return ranges
+     */
+    public Ranges queryApproximate(long[] a, long[] b, int depth) {
+        Preconditions.checkArgument(depth >= 0 && depth <= bits,
+                "depth must be between 0 and bits inclusive");
+        Box box = new Box(a, b);
+        Ranges ranges = ranges(
+                new SubdivisionQuery(bits, dimensions, box.mins(), box.maxes(), depth), 0);
+        // the ranges added are coarse so record the cells that were asked for
+        ranges.exactCells(box.volume());
+        return ranges;
+    }
+
+    private static Ranges ranges(SubdivisionQuery q, int maxRanges) {
+        Ranges ranges = new Ranges(maxRanges);
+        RangeIterator it = new RangeIterator(q);
+        while (it.hasNext()) {
+            ranges.add(it.next());
         }
+        return ranges;
+    }
+
+    /**
+     * Returns the index ranges exactly covering the region bounded by {@code a}
+     * and {@code b} lazily in increasing order. The ranges are the same as those
+     * returned by {@link #query(long[], long[])} but are found with the
+     * Subdivision Algorithm (see README.md) only as they are requested, so the
+     * first range is available before the last is known, memory use is bounded
+     * by the depth of the curve rather than by the number of ranges and a
+     * consumer that stops early stops the search too.
+     * 
+     * @param a one vertex of the region
+     * @param b the opposing vertex to a
+     * @return iterator of ranges in increasing order
+     */
+    public Iterator<Range> queryIterator(long[] a, long[] b) {
+        Box box = new Box(a, b);
+        return new RangeIterator(
+                new SubdivisionQuery(bits, dimensions, box.mins(), box.maxes()));
+    }
+
+    /**
+     * Returns a sequential stream of the ranges from
+     * {@link #queryIterator(long[], long[])}.
+     * 
+     * @param a one vertex of the region
+     * @param b the opposing vertex to a
+     * @return ordered stream of ranges
+     */
+    public Stream<Range> queryStream(long[] a, long[] b) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(queryIterator(a, b),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
     }
 
     public static final class Builder {
@@ -245,7 +855,7 @@ public final class SmallHilbertCurve {
         public SmallHilbertCurve dimensions(int dimensions) {
             Preconditions.checkArgument(bits * dimensions <= 63,
                     "bits * dimensions must be less than or equal to 63");
-            return new SmallHilbertCurve(bits, dimensions);
+            return new SmallHilbertCurve(bits, dimensions, null);
         }
 
     }
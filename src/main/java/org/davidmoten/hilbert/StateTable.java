@@ -0,0 +1,165 @@
+package org.davidmoten.hilbert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table driven Hilbert curve transform for a small number of dimensions. The
+ * reachable states of {@link Orientation} are enumerated once and the index
+ * digits for several levels at a time are looked up per state. The results are
+ * bit-identical to Skilling's transform as used by {@link HilbertCurve}.
+ *
+ * <p>
+ * Points are passed in and out in interleaved form, that is with the bits laid
+ * out exactly as they are in the index (the ordinates of a point interleaved by
+ * {@link Bits#spread(long, int)}).
+ */
+final class StateTable {
+
+    private static final StateTable TWO_DIMENSIONS = new StateTable(2, 4);
+    private static final StateTable THREE_DIMENSIONS = new StateTable(3, 2);
+
+    private final int dimensions;
+    private final int levelsPerStep;
+    private final int stepBits;
+    private final long stepMask;
+
+    // entries are nextState << stepBits | digits
+    private final int[] encode;
+    private final int[] decode;
+    // one level per lookup for the leading levels when bits % levelsPerStep != 0
+    private final int[] encodeLevel;
+    private final int[] decodeLevel;
+
+    private StateTable(int dimensions, int levelsPerStep) {
+        this.dimensions = dimensions;
+        this.levelsPerStep = levelsPerStep;
+        this.stepBits = dimensions * levelsPerStep;
+        this.stepMask = (1L << stepBits) - 1;
+        List<Orientation> states = states(dimensions);
+        this.encode = table(states, levelsPerStep, true);
+        this.decode = table(states, levelsPerStep, false);
+        this.encodeLevel = table(states, 1, true);
+        this.decodeLevel = table(states, 1, false);
+    }
+
+    /**
+     * Returns the table for the given number of dimensions or null if the number
+     * of dimensions is not supported by this engine (more than 3).
+     *
+     * @param dimensions number of dimensions
+     * @return table or null
+     */
+    static StateTable forDimensions(int dimensions) {
+        if (dimensions == 2) {
+            return TWO_DIMENSIONS;
+        } else if (dimensions == 3) {
+            return THREE_DIMENSIONS;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the Hilbert index of the interleaved point.
+     *
+     * @param point interleaved ordinates
+     * @param bits  depth of the Hilbert curve
+     * @return index
+     */
+    long index(long point, int bits) {
+        return transform(point, bits, encode, encodeLevel);
+    }
+
+    /**
+     * Returns the interleaved point for the given Hilbert index.
+     *
+     * @param index index along the curve
+     * @param bits  depth of the Hilbert curve
+     * @return interleaved ordinates
+     */
+    long point(long index, int bits) {
+        return transform(index, bits, decode, decodeLevel);
+    }
+
+    /**
+     * Decodes one level of an index.
+     *
+     * @param state the state on entering the level (0 at the top level)
+     * @param digit the index digit at the level
+     * @return the state for the next lower level shifted left by
+     *         {@code dimensions} ORed with the interleaved point digit
+     */
+    int decodeLevel(int state, long digit) {
+        return decodeLevel[(state << dimensions) | (int) digit];
+    }
+
+    private long transform(long value, int bits, int[] steps, int[] levels) {
+        final int n = dimensions;
+        final long levelMask = (1L << n) - 1;
+        int state = 0;
+        long result = 0;
+        int level = bits;
+        for (int i = bits % levelsPerStep; i > 0; i--) {
+            level--;
+            int e = levels[(state << n) | (int) ((value >>> (level * n)) & levelMask)];
+            result = (result << n) | (e & levelMask);
+            state = e >>> n;
+        }
+        while (level > 0) {
+            level -= levelsPerStep;
+            int e = steps[(state << stepBits) | (int) ((value >>> (level * n)) & stepMask)];
+            result = (result << stepBits) | (e & stepMask);
+            state = e >>> stepBits;
+        }
+        return result;
+    }
+
+    private static List<Orientation> states(int dimensions) {
+        // breadth first search of states reachable from the identity
+        List<Orientation> states = new ArrayList<>();
+        Map<Long, Integer> ids = new HashMap<>();
+        Orientation start = new Orientation(dimensions);
+        states.add(start);
+        ids.put(start.key(), 0);
+        for (int s = 0; s < states.size(); s++) {
+            for (long digit = 0; digit < 1L << dimensions; digit++) {
+                Orientation o = new Orientation(dimensions);
+                o.copyFrom(states.get(s));
+                o.encodeDigit(digit);
+                if (!ids.containsKey(o.key())) {
+                    ids.put(o.key(), states.size());
+                    states.add(o);
+                }
+            }
+        }
+        return states;
+    }
+
+    private static int[] table(List<Orientation> states, int levels, boolean encode) {
+        int n = states.get(0).dimensions();
+        int bits = n * levels;
+        Map<Long, Integer> ids = new HashMap<>();
+        for (int s = 0; s < states.size(); s++) {
+            ids.put(states.get(s).key(), s);
+        }
+        int[] table = new int[states.size() << bits];
+        Orientation o = new Orientation(n);
+        for (int s = 0; s < states.size(); s++) {
+            for (long digits = 0; digits < 1L << bits; digits++) {
+                o.copyFrom(states.get(s));
+                long result = 0;
+                for (int level = levels - 1; level >= 0; level--) {
+                    long digit = (digits >>> (level * n)) & ((1L << n) - 1);
+                    long r = encode ? o.encodeDigit(digit) : o.decodeDigit(digit);
+                    result = (result << n) | r;
+                }
+                table[(s << bits) | (int) digits] = (ids.get(o.key()) << bits) | (int) result;
+            }
+        }
+        return table;
+    }
+
+}
@@ -0,0 +1,234 @@
+package org.davidmoten.hilbert;
+
+import java.util.Arrays;
+
+import com.github.davidmoten.guavamini.Preconditions;
+
+/**
+ * Finds the index ranges of a {@link SmallHilbertCurve} that cover a box by
+ * descending the sub-cubes of the curve in index order (after Lawder and King,
+ * "Querying multi-dimensional data indexed using the Hilbert space-filling
+ * curve"). A sub-cube that is disjoint from the box is pruned and a sub-cube
+ * that is inside the box is reported as a whole as the contiguous index range
+ * that it occupies. Only sub-cubes that straddle the boundary of the box are
+ * subdivided so the work depends on the number of ranges found and the depth of
+ * the curve rather than on the surface area of the box.
+ *
+ * <p>
+ * If a maximum depth less than the number of bits is given then sub-cubes at
+ * that depth that straddle the boundary of the box are reported as if they were
+ * inside the box (an approximate query).
+ *
+ * <p>
+ * The search is an explicit depth first traversal so the memory used is bounded
+ * by the depth of the curve. Sub-cube ranges are reported in increasing index
+ * order by {@link #next()} but adjacent sub-cube ranges are not joined.
+ *
+ * <p>
+ * In 2 and 3 dimensions every child of a sub-cube is decoded in index order
+ * with the state table. In more dimensions a sub-cube has 2<sup>dimensions</sup>
+ * children (up to 2<sup>63</sup>) so only the children that overlap the box are
+ * encoded and then sorted into index order. The children that overlap are found
+ * per ordinate (the box overlaps the lower half, the upper half or both) so
+ * there are 2<sup>f</sup> of them where {@code f} is the number of ordinates on
+ * which the box overlaps both halves.
+ */
+// NotThreadSafe
+final class SubdivisionQuery {
+
+    private final int bits;
+    private final int dimensions;
+    private final long[] mins;
+    private final long[] maxes;
+    // sub-cubes at this depth (the whole curve is at depth 0) are not subdivided
+    private final int maxDepth;
+
+    // table driven engine for 2 and 3 dimensions, null otherwise
+    private final StateTable table;
+
+    // the stack of sub-cubes being subdivided, position p is a sub-cube with
+    // bits - p levels below it
+    private final int[] tableStates;
+    private final Orientation[] states;
+    private final Orientation child;
+    private final long[][] corners;
+    private final long[] prefixes;
+    private final int[] nextDigits;
+    // the index digits of the children that overlap the box in index order at
+    // each position of the stack (only used without the state table)
+    private final long[][] children;
+    private final int[] childCounts;
+    private int top;
+
+    private long low;
+    private long high;
+
+    SubdivisionQuery(int bits, int dimensions, long[] mins, long[] maxes) {
+        this(bits, dimensions, mins, maxes, bits);
+    }
+
+    SubdivisionQuery(int bits, int dimensions, long[] mins, long[] maxes, int maxDepth) {
+        this.bits = bits;
+        this.dimensions = dimensions;
+        this.mins = mins;
+        this.maxes = maxes;
+        this.maxDepth = maxDepth;
+        this.table = StateTable.forDimensions(dimensions);
+        if (table != null) {
+            this.tableStates = new int[bits];
+            this.states = null;
+            this.child = null;
+            this.children = null;
+            this.childCounts = null;
+        } else {
+            this.tableStates = null;
+            this.states = new Orientation[bits];
+            for (int i = 0; i < bits; i++) {
+                states[i] = new Orientation(dimensions);
+            }
+            this.child = new Orientation(dimensions);
+            this.children = new long[bits][];
+            this.childCounts = new int[bits];
+        }
+        this.corners = new long[bits][dimensions];
+        this.prefixes = new long[bits];
+        this.nextDigits = new int[bits];
+        // the whole curve is the first sub-cube to subdivide
+        this.top = 0;
+        if (table == null && maxDepth > 0) {
+            findChildren(0);
+        }
+    }
+
+    /**
+     * Sets the index digits of the children of the sub-cube at stack position
+     * {@code q} that overlap the box (the sub-cube itself must overlap the box)
+     * in increasing order.
+     */
+    private void findChildren(int q) {
+        final int n = dimensions;
+        long[] corner = corners[q];
+        long half = 1L << (bits - 1 - q);
+        // the ordinate digits of the children that overlap are the bits of
+        // fixed with any combination of the bits of free
+        long fixed = 0;
+        long free = 0;
+        for (int j = 0; j < n; j++) {
+            long mid = corner[j] + half;
+            long bit = 1L << (n - 1 - j);
+            if (maxes[j] < mid) {
+                // lower half only
+            } else if (mins[j] >= mid) {
+                fixed |= bit;
+            } else {
+                free |= bit;
+            }
+        }
+        int f = Long.bitCount(free);
+        Preconditions.checkArgument(f <= 30,
+                "the box overlaps too many sub-cubes to subdivide (more than 2^30 at one level)");
+        int count = 1 << f;
+        long[] digits = children[q];
+        if (digits == null || digits.length < count) {
+            digits = new long[count];
+            children[q] = digits;
+        }
+        // enumerate the subsets of free
+        long s = 0;
+        for (int i = 0; i < count; i++) {
+            child.copyFrom(states[q]);
+            digits[i] = child.encodeDigit(fixed | s);
+            s = (s - free) & free;
+        }
+        Arrays.sort(digits, 0, count);
+        childCounts[q] = count;
+    }
+
+    /**
+     * Moves to the next sub-cube range that is inside the box.
+     *
+     * @return false if there are no more ranges
+     */
+    boolean next() {
+        final int n = dimensions;
+        if (maxDepth == 0 && top == 0) {
+            // the whole curve overlaps the box and is not subdivided
+            top = -1;
+            low = 0;
+            high = (1L << (bits * n)) - 1;
+            return true;
+        }
+        while (top >= 0) {
+            int p = top;
+            if (nextDigits[p] == (table != null ? 1 << n : childCounts[p])) {
+                top--;
+                continue;
+            }
+            // the number of levels below the child sub-cube
+            int levels = bits - 1 - p;
+            long digit;
+            long point;
+            int nextState = 0;
+            if (table != null) {
+                digit = nextDigits[p]++;
+                int e = table.decodeLevel(tableStates[p], digit);
+                nextState = e >>> n;
+                point = e & ((1L << n) - 1);
+            } else {
+                digit = children[p][nextDigits[p]++];
+                child.copyFrom(states[p]);
+                point = child.decodeDigit(digit);
+            }
+            // compare the child sub-cube with the box
+            long[] corner = corners[p];
+            long side = 1L << levels;
+            boolean inside = true;
+            boolean disjoint = false;
+            for (int j = 0; j < n; j++) {
+                long min = corner[j] + (((point >>> (n - 1 - j)) & 1) << levels);
+                long max = min + side - 1;
+                if (max < mins[j] || min > maxes[j]) {
+                    disjoint = true;
+                    break;
+                } else if (min < mins[j] || max > maxes[j]) {
+                    inside = false;
+                }
+            }
+            if (disjoint) {
+                continue;
+            }
+            long prefix = (prefixes[p] << n) | digit;
+            // the child is at depth p + 1
+            if (inside || p + 1 >= maxDepth) {
+                low = prefix << (levels * n);
+                high = low + (1L << (levels * n)) - 1;
+                return true;
+            }
+            // straddles the boundary of the box so subdivide (levels > 0
+            // because a single cell is either inside or disjoint)
+            int q = p + 1;
+            top = q;
+            nextDigits[q] = 0;
+            prefixes[q] = prefix;
+            for (int j = 0; j < n; j++) {
+                corners[q][j] = corner[j] + (((point >>> (n - 1 - j)) & 1) << levels);
+            }
+            if (table != null) {
+                tableStates[q] = nextState;
+            } else {
+                states[q].copyFrom(child);
+                findChildren(q);
+            }
+        }
+        return false;
+    }
+
+    long low() {
+        return low;
+    }
+
+    long high() {
+        return high;
+    }
+
+}
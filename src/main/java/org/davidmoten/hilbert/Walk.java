@@ -0,0 +1,153 @@
+package org.davidmoten.hilbert;
+
+/**
+ * Cursor that visits the points of a {@link SmallHilbertCurve} in index order
+ * over an inclusive index range. Moving from one index to the next only
+ * recomputes the levels of the curve whose index digits changed (on average
+ * just over one level per step) so the work per step is O(1) amortized rather
+ * than a full decode.
+ *
+ * <pre>
+ * Walk walk = curve.walk(low, high);
+ * while (walk.next()) {
+ *     long index = walk.index();
+ *     long x = walk.ordinate(0);
+ *     ...
+ * }
+ * </pre>
+ */
+// NotThreadSafe
+public final class Walk {
+
+    private final int bits;
+    private final int dimensions;
+    private final long high;
+    private final long digitMask;
+
+    // table driven engine for 2 and 3 dimensions, null otherwise
+    private final StateTable table;
+    // tableStates[k] is the table state on entering level k (level 0 is the
+    // lowest)
+    private final int[] tableStates;
+    // states[k] is the orientation on entering level k when there is no table
+    private final Orientation[] states;
+    // used to decode level 0 (nothing below it needs the resulting orientation)
+    private final Orientation last;
+    private final long[] x;
+
+    private long index;
+    private boolean started;
+    private boolean finished;
+
+    Walk(int bits, int dimensions, long low, long high) {
+        this.bits = bits;
+        this.dimensions = dimensions;
+        this.high = high;
+        this.digitMask = (1L << dimensions) - 1;
+        this.table = StateTable.forDimensions(dimensions);
+        if (table != null) {
+            this.tableStates = new int[bits];
+            this.states = null;
+            this.last = null;
+        } else {
+            this.tableStates = null;
+            this.states = new Orientation[bits];
+            for (int k = 0; k < bits; k++) {
+                states[k] = new Orientation(dimensions);
+            }
+            this.last = new Orientation(dimensions);
+        }
+        this.x = new long[dimensions];
+        this.index = low;
+    }
+
+    /**
+     * Moves to the next point in index order.
+     *
+     * @return false if there are no more points in the range (in which case the
+     *         cursor stays on the last point)
+     */
+    public boolean next() {
+        if (finished) {
+            return false;
+        } else if (!started) {
+            started = true;
+            decodeFrom(bits - 1);
+            return true;
+        } else if (index == high) {
+            finished = true;
+            return false;
+        } else {
+            long previous = index;
+            index++;
+            int changed = 63 - Long.numberOfLeadingZeros(previous ^ index);
+            decodeFrom(changed / dimensions);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the index of the current point.
+     *
+     * @return index of the current point
+     */
+    public long index() {
+        return index;
+    }
+
+    /**
+     * Returns ordinate {@code j} of the current point.
+     *
+     * @param j ordinate number (0 to dimensions - 1)
+     * @return ordinate value
+     */
+    public long ordinate(int j) {
+        return x[j];
+    }
+
+    /**
+     * Copies the current point to {@code point}.
+     *
+     * @param point destination of length at least {@code dimensions}
+     */
+    public void point(long[] point) {
+        System.arraycopy(x, 0, point, 0, dimensions);
+    }
+
+    /**
+     * Calls {@code consumer} with every remaining point in the range. The point
+     * array passed to the consumer is reused for every call and must not be
+     * modified.
+     *
+     * @param consumer receives each index and point
+     */
+    public void forEach(PointConsumer consumer) {
+        while (next()) {
+            consumer.accept(index, x);
+        }
+    }
+
+    // decodes the digits of index at the given level and all lower levels
+    private void decodeFrom(int level) {
+        final int n = dimensions;
+        for (int k = level; k >= 0; k--) {
+            long digit;
+            if (table != null) {
+                int e = table.decodeLevel(tableStates[k], (index >>> (k * n)) & digitMask);
+                if (k > 0) {
+                    tableStates[k - 1] = e >>> n;
+                }
+                digit = e & digitMask;
+            } else {
+                Orientation o = k == 0 ? last : states[k - 1];
+                o.copyFrom(states[k]);
+                digit = o.decodeDigit((index >>> (k * n)) & digitMask);
+            }
+            long clear = ~(1L << k);
+            for (int j = 0; j < n; j++) {
+                x[j] = (x[j] & clear) | (((digit >>> (n - 1 - j)) & 1) << k);
+            }
+        }
+    }
+
+}
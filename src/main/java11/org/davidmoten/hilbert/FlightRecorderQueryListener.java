@@ -0,0 +1,136 @@
+package org.davidmoten.hilbert;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java 11+ version of {@code FlightRecorderQueryListener} (loaded from the
+ * multi-release jar) that records query phases as JDK Flight Recorder events.
+ * It is only loaded by {@link QueryListener#flightRecorder()} so the library
+ * does not need {@code jdk.jfr} unless JFR events are requested.
+ */
+final class FlightRecorderQueryListener implements QueryListener {
+
+    private static final FlightRecorderQueryListener INSTANCE = new FlightRecorderQueryListener();
+
+    private FlightRecorderQueryListener() {
+        // singleton
+    }
+
+    static QueryListener instance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void perimeterVisited(long cells, long nanos) {
+        PerimeterEvent event = new PerimeterEvent();
+        if (event.shouldCommit()) {
+            event.cells = cells;
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void perimeterSorted(long cells, long nanos) {
+        SortEvent event = new SortEvent();
+        if (event.shouldCommit()) {
+            event.cells = cells;
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void rangesBuilt(long exactRanges, long nanos) {
+        RangesEvent event = new RangesEvent();
+        if (event.shouldCommit()) {
+            event.exactRanges = exactRanges;
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void rangesMerged(long mergedGaps, long ranges, long exactCells,
+            long coveredCells) {
+        MergeEvent event = new MergeEvent();
+        if (event.shouldCommit()) {
+            event.mergedGaps = mergedGaps;
+            event.ranges = ranges;
+            event.exactCells = exactCells;
+            event.coveredCells = coveredCells;
+            event.commit();
+        }
+    }
+
+    // the phase has already finished when it is reported so its time is a field
+    // rather than the duration of the event
+
+    @Name("org.davidmoten.hilbert.Perimeter")
+    @Label("Perimeter")
+    @Category("Hilbert Curve")
+    @Description("Perimeter cells of a search box visited and encoded")
+    @StackTrace(false)
+    static final class PerimeterEvent extends Event {
+        @Label("Cells")
+        long cells;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("org.davidmoten.hilbert.Sort")
+    @Label("Sort")
+    @Category("Hilbert Curve")
+    @Description("Perimeter indexes of a search box sorted")
+    @StackTrace(false)
+    static final class SortEvent extends Event {
+        @Label("Cells")
+        long cells;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("org.davidmoten.hilbert.Ranges")
+    @Label("Ranges")
+    @Category("Hilbert Curve")
+    @Description("Ranges built (and merged) from the sorted perimeter indexes")
+    @StackTrace(false)
+    static final class RangesEvent extends Event {
+        @Label("Exact Ranges")
+        long exactRanges;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("org.davidmoten.hilbert.Merge")
+    @Label("Merge")
+    @Category("Hilbert Curve")
+    @Description("Outcome of merging the exact ranges to keep within maxRanges")
+    @StackTrace(false)
+    static final class MergeEvent extends Event {
+        @Label("Merged Gaps")
+        long mergedGaps;
+
+        @Label("Ranges")
+        long ranges;
+
+        @Label("Exact Cells")
+        long exactCells;
+
+        @Label("Covered Cells")
+        long coveredCells;
+    }
+
+}
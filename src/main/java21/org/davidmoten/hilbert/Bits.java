@@ -0,0 +1,73 @@
+package org.davidmoten.hilbert;
+
+/**
+ * Java 21+ version of {@code Bits} (loaded from the multi-release jar) that
+ * uses {@link Long#expand(long, long)} and {@link Long#compress(long, long)}.
+ * HotSpot compiles these to the BMI2 {@code PDEP} and {@code PEXT}
+ * instructions on x86.
+ *
+ * <p>
+ * {@code spread(x, n)} moves bit {@code k} of {@code x} to bit {@code k * n}
+ * and {@code compact(x, n)} is its inverse (bits of {@code x} that are not at
+ * a multiple of {@code n} are ignored).
+ */
+final class Bits {
+
+    // MASKS[n] has every n-th bit set starting at bit 0
+    private static final long[] MASKS = masks();
+
+    private Bits() {
+        // prevent instantiation
+    }
+
+    static long spread(long x, int dimensions) {
+        return Long.expand(x, MASKS[dimensions]);
+    }
+
+    static long compact(long x, int dimensions) {
+        return Long.compress(x, MASKS[dimensions]);
+    }
+
+    static long spread2(long x) {
+        return Long.expand(x, 0x5555555555555555L);
+    }
+
+    static long compact2(long x) {
+        return Long.compress(x, 0x5555555555555555L);
+    }
+
+    static long spread3(long x) {
+        return Long.expand(x, 0x1249249249249249L);
+    }
+
+    static long compact3(long x) {
+        return Long.compress(x, 0x1249249249249249L);
+    }
+
+    static long spread4(long x) {
+        return Long.expand(x, 0x1111111111111111L);
+    }
+
+    static long compact4(long x) {
+        return Long.compress(x, 0x1111111111111111L);
+    }
+
+    static long spreadAny(long x, int dimensions) {
+        return spread(x, dimensions);
+    }
+
+    static long compactAny(long x, int dimensions) {
+        return compact(x, dimensions);
+    }
+
+    private static long[] masks() {
+        long[] masks = new long[64];
+        for (int n = 1; n < 64; n++) {
+            for (int shift = 0; shift < 64; shift += n) {
+                masks[n] |= 1L << shift;
+            }
+        }
+        return masks;
+    }
+
+}
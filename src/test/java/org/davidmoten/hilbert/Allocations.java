@@ -0,0 +1,40 @@
+package org.davidmoten.hilbert;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+
+public final class Allocations {
+
+    private Allocations() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread while running
+     * {@code task} {@code times} times (after the same number of warm up runs).
+     * Skips the calling test if the JVM does not measure thread allocation.
+     *
+     * @param times number of runs
+     * @param task  task to measure
+     * @return bytes allocated
+     */
+    public static long allocatedBytes(int times, Runnable task) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+        mx.setThreadAllocatedMemoryEnabled(true);
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < times; i++) {
+            task.run();
+        }
+        // the cost of the measurement itself
+        long overhead = -mx.getThreadAllocatedBytes(id) + mx.getThreadAllocatedBytes(id);
+        long start = mx.getThreadAllocatedBytes(id);
+        for (int i = 0; i < times; i++) {
+            task.run();
+        }
+        return mx.getThreadAllocatedBytes(id) - start - overhead;
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.davidmoten.hilbert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of a batch of independent small box queries (as received by a
+ * query server) run with {@link SmallHilbertCurve#queryAll} on pools of
+ * different sizes. Compare with {@link #querySerial(Blackhole)} for the same
+ * batch on one thread.
+ */
+@State(Scope.Benchmark)
+public class BatchQueryBenchmarks {
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private final SmallHilbertCurve curve = HilbertCurve.small().bits(10).dimensions(3);
+    private List<long[][]> boxes;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(1);
+        boxes = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            long[] a = new long[3];
+            long[] b = new long[3];
+            for (int j = 0; j < 3; j++) {
+                a[j] = r.nextInt(900);
+                b[j] = a[j] + 10 + r.nextInt(50);
+            }
+            boxes.add(new long[][] { a, b });
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public void querySerial(Blackhole bh) {
+        for (long[][] box : boxes) {
+            bh.consume(curve.query(box[0], box[1], 16));
+        }
+    }
+
+    @Benchmark
+    public void queryAll(Blackhole bh) {
+        for (CompletableFuture<Ranges> f : curve.queryAll(boxes, 16, pool)) {
+            bh.consume(f.join());
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package org.davidmoten.hilbert;
 
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -16,6 +18,19 @@ public class Benchmarks {
     private static final int N = (int) small.maxOrdinate();
     private static final long[] point = new long[DIMENSIONS];
     private static final List<long[]> points = createPoints();
+    // the same points packed with stride DIMENSIONS for the bulk methods
+    private static final long[] pointsFlat = createPointsFlat();
+    private static final LongBuffer pointsBuffer = createPointsBuffer();
+    private static final long[] indexes = createIndexes();
+    private static final long[] indexesOut = new long[N];
+    private static final long[] pointsOut = new long[N * DIMENSIONS];
+    private static final long[][] pointsOutColumns = new long[DIMENSIONS][N];
+    // 3 dimensional box with 300 cells on each side for the 10 bit query curve
+    private static final long[] LARGE_BOX_A = new long[] { 100, 200, 300 };
+    private static final long[] LARGE_BOX_B = new long[] { 399, 499, 599 };
+
+    // 4 x 4 overlapping map tiles of 60 x 60 cells over 100 time steps
+    private static final List<long[][]> TILES = createTiles();
 
     @Benchmark
     public void roundTripAllPoints10Bits1024Calls(Blackhole b) {
@@ -39,6 +54,21 @@ public class Benchmarks {
         }
     }
 
+    // multiply ops/s by N to get points/s for comparison with
+    // toIndexAllPoints10Bits1024CallsSmall
+
+    @Benchmark
+    public void toIndexAllPoints10Bits1024CallsSmallBulk(Blackhole b) {
+        small.index(pointsFlat, 0, N, indexesOut);
+        b.consume(indexesOut);
+    }
+
+    @Benchmark
+    public void toIndexAllPoints10Bits1024CallsSmallBulkDirectBuffer(Blackhole b) {
+        small.index(pointsBuffer, 0, N, indexesOut);
+        b.consume(indexesOut);
+    }
+
     @Benchmark
     public void pointAllPoints10Bits1024Calls(Blackhole b) {
         for (long i = 0; i < N; i++) {
@@ -61,6 +91,23 @@ public class Benchmarks {
         }
     }
 
+    @Benchmark
+    public void pointSmallAllPoints10Bits1024CallsBulk(Blackhole b) {
+        small.points(indexes, 0, N, pointsOut);
+        b.consume(pointsOut);
+    }
+
+    @Benchmark
+    public void pointSmallAllPoints10Bits1024CallsBulkColumns(Blackhole b) {
+        small.points(indexes, 0, N, pointsOutColumns);
+        b.consume(pointsOutColumns);
+    }
+
+    @Benchmark
+    public void pointSmallAllPoints10Bits1024CallsWalk(Blackhole b) {
+        small.forEach(0, N - 1, (index, point) -> b.consume(point));
+    }
+
     @Benchmark
     public void roundTripAllPoints10Bits1024CallsLowAllocation(Blackhole b) {
         for (long i = 0; i < N; i++) {
@@ -105,6 +152,65 @@ public class Benchmarks {
         return query.query(8);
     }
 
+    @Benchmark
+    public Ranges querySydneyMaxRanges8Context() {
+        return query.context.query(query.point1, query.point2, 8);
+    }
+
+    @Benchmark
+    public void querySydneyMaxRanges8ContextConsumer(Blackhole b) {
+        query.context.query(query.point1, query.point2, 8, (low, high) -> {
+            b.consume(low);
+            b.consume(high);
+        });
+    }
+
+    @Benchmark
+    public CostedRanges querySydneyLinearCost() {
+        return query.h.query(query.point1, query.point2, QueryCost.linear(100, 1));
+    }
+
+    @Benchmark
+    public Ranges querySydneySubdivision() {
+        return query.querySubdivision();
+    }
+
+    @Benchmark
+    public Ranges querySydneyMaxRanges8Subdivision() {
+        return query.querySubdivision(8);
+    }
+
+    @Benchmark
+    public Ranges queryLargeBox() {
+        return query.h.query(LARGE_BOX_A, LARGE_BOX_B);
+    }
+
+    @Benchmark
+    public Ranges queryLargeBoxSubdivision() {
+        return query.h.querySubdivision(LARGE_BOX_A, LARGE_BOX_B);
+    }
+
+    @Benchmark
+    public Ranges queryLargeBoxApproximateDepth6() {
+        return query.h.queryApproximate(LARGE_BOX_A, LARGE_BOX_B, 6);
+    }
+
+    @Benchmark
+    public Ranges queryTilesMaxRanges64() {
+        return query.h.query(TILES, 64);
+    }
+
+    @Benchmark
+    public Ranges queryTilesSeparatelyMaxRanges64() {
+        List<RangeSet> sets = new ArrayList<>(TILES.size());
+        for (long[][] tile : TILES) {
+            sets.add(query.h.query(tile[0], tile[1]).toRangeSet());
+        }
+        Ranges ranges = new Ranges(64);
+        RangeSet.union(sets, ranges);
+        return ranges;
+    }
+
     private static final class Query {
     	//query sydney region from whole world for one hour from midday from a day
         float lat1 = -33.806477f;
@@ -118,6 +224,7 @@ public class Benchmarks {
         int bits = 10;
         int dimensions = 3;
         SmallHilbertCurve h = HilbertCurve.small().bits(bits).dimensions(dimensions);
+        QueryContext context = h.queryContext();
         long maxOrdinates = 1L << bits;
         long[] point1 = GeoUtil.scalePoint(lat1, lon1, t1, minTime, maxTime, maxOrdinates);
         long[] point2 = GeoUtil.scalePoint(lat2, lon2, t2, minTime, maxTime, maxOrdinates);
@@ -129,6 +236,48 @@ public class Benchmarks {
         Ranges query(int maxRanges) {
             return h.query(point1, point2, maxRanges);
         }
+
+        Ranges querySubdivision() {
+            return h.querySubdivision(point1, point2);
+        }
+
+        Ranges querySubdivision(int maxRanges) {
+            return h.querySubdivision(point1, point2, maxRanges);
+        }
+    }
+
+    private static List<long[][]> createTiles() {
+        List<long[][]> list = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                list.add(new long[][] { { 300 + i * 50, 300 + j * 50, 400 },
+                        { 359 + i * 50, 359 + j * 50, 499 } });
+            }
+        }
+        return list;
+    }
+
+    private static long[] createIndexes() {
+        long[] a = new long[N];
+        for (int i = 0; i < N; i++) {
+            a[i] = i;
+        }
+        return a;
+    }
+
+    private static long[] createPointsFlat() {
+        long[] a = new long[N * DIMENSIONS];
+        for (int i = 0; i < N; i++) {
+            System.arraycopy(points.get(i), 0, a, i * DIMENSIONS, DIMENSIONS);
+        }
+        return a;
+    }
+
+    private static LongBuffer createPointsBuffer() {
+        LongBuffer bb = ByteBuffer.allocateDirect(N * DIMENSIONS * Long.BYTES).asLongBuffer();
+        bb.put(pointsFlat);
+        bb.flip();
+        return bb;
     }
 
     private static List<long[]> createPoints() {
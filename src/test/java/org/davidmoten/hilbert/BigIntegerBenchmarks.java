@@ -0,0 +1,106 @@
+package org.davidmoten.hilbert;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the word-level conversion between a transposed index and a
+ * {@link BigInteger} in {@link HilbertCurve} with the per-bit loops it used
+ * previously (copied below). With 32 bits the dimensions 4, 8 and 20 give 128,
+ * 256 and 640 bit indexes.
+ */
+@State(Scope.Benchmark)
+public class BigIntegerBenchmarks {
+
+    private static final int BITS = 32;
+    private static final int N = 256;
+
+    @Param({ "4", "8", "20" })
+    public int dimensions;
+
+    private HilbertCurve c;
+    private long[][] transposed;
+    private BigInteger[] indexes;
+
+    @Setup
+    public void setup() {
+        c = HilbertCurve.bits(BITS).dimensions(dimensions);
+        Random r = new Random(1);
+        transposed = new long[N][dimensions];
+        indexes = new BigInteger[N];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < dimensions; j++) {
+                transposed[i][j] = r.nextLong() & 0xFFFFFFFFL;
+            }
+            indexes[i] = c.toIndex(transposed[i]);
+        }
+    }
+
+    @Benchmark
+    public void toIndexPerBit(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            b.consume(toIndexPerBit(BITS, transposed[i]));
+        }
+    }
+
+    @Benchmark
+    public void toIndexWordLevel(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            b.consume(c.toIndex(transposed[i]));
+        }
+    }
+
+    @Benchmark
+    public void transposePerBit(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            long[] x = new long[dimensions];
+            transposePerBit(BITS, indexes[i], x);
+            b.consume(x);
+        }
+    }
+
+    @Benchmark
+    public void transposeWordLevel(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            b.consume(c.transpose(indexes[i]));
+        }
+    }
+
+    private static BigInteger toIndexPerBit(int bits, long[] transposedIndex) {
+        int length = bits * transposedIndex.length;
+        byte[] b = new byte[length / 8 + 1];
+        int bIndex = length - 1;
+        long mask = 1L << (bits - 1);
+        for (int i = 0; i < bits; i++) {
+            for (int j = 0; j < transposedIndex.length; j++) {
+                if ((transposedIndex[j] & mask) != 0) {
+                    b[b.length - 1 - bIndex / 8] |= 1 << (bIndex % 8);
+                }
+                bIndex--;
+            }
+            mask >>= 1;
+        }
+        return new BigInteger(1, b);
+    }
+
+    private static void transposePerBit(int bits, BigInteger index, long[] x) {
+        int dimensions = x.length;
+        int length = bits * dimensions;
+        byte[] b = index.toByteArray();
+        for (int idx = 0; idx < 8 * b.length; idx++) {
+            if ((b[b.length - 1 - idx / 8] & (1L << (idx % 8))) != 0) {
+                int dim = (length - idx - 1) % dimensions;
+                int shift = (idx / dimensions) % bits;
+                x[dim] |= 1L << shift;
+            }
+        }
+    }
+
+}
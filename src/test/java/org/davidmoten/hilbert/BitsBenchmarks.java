@@ -0,0 +1,106 @@
+package org.davidmoten.hilbert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the word-level interleaving in {@link Bits} with the per-bit loops
+ * that {@link SmallHilbertCurve} used previously (copied below).
+ */
+@State(Scope.Benchmark)
+public class BitsBenchmarks {
+
+    private static final int DIMENSIONS = 3;
+    private static final int N = 1024;
+
+    @Param({ "10", "16", "21" })
+    public int bits;
+
+    private long[][] transposed;
+    private long[] indexes;
+    private final long[] x = new long[DIMENSIONS];
+
+    @Setup
+    public void setup() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(bits).dimensions(DIMENSIONS);
+        transposed = new long[N][];
+        indexes = new long[N];
+        long step = c.maxIndex() / N;
+        for (int i = 0; i < N; i++) {
+            indexes[i] = i * step;
+            transposed[i] = HilbertCurve.transposedIndex(bits, c.point(indexes[i]));
+        }
+    }
+
+    @Benchmark
+    public void untransposePerBit(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            b.consume(toIndexPerBit(bits, transposed[i]));
+        }
+    }
+
+    @Benchmark
+    public void untransposeWordLevel(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            long[] t = transposed[i];
+            long index = 0;
+            for (int j = 0; j < DIMENSIONS; j++) {
+                index |= Bits.spread(t[j], DIMENSIONS) << (DIMENSIONS - 1 - j);
+            }
+            b.consume(index);
+        }
+    }
+
+    @Benchmark
+    public void transposePerBit(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            Util.zero(x);
+            transposePerBit(bits, indexes[i], x);
+            b.consume(x);
+        }
+    }
+
+    @Benchmark
+    public void transposeWordLevel(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            long index = indexes[i];
+            for (int j = 0; j < DIMENSIONS; j++) {
+                x[j] = Bits.compact(index >>> (DIMENSIONS - 1 - j), DIMENSIONS);
+            }
+            b.consume(x);
+        }
+    }
+
+    private static long toIndexPerBit(int bits, long[] transposedIndex) {
+        long b = 0;
+        int bIndex = bits * transposedIndex.length - 1;
+        long mask = 1L << (bits - 1);
+        for (int i = 0; i < bits; i++) {
+            for (int j = 0; j < transposedIndex.length; j++) {
+                if ((transposedIndex[j] & mask) != 0) {
+                    b |= 1L << bIndex;
+                }
+                bIndex--;
+            }
+            mask >>= 1;
+        }
+        return b;
+    }
+
+    private static void transposePerBit(int bits, long index, long[] x) {
+        int dimensions = x.length;
+        int length = bits * dimensions;
+        for (int idx = 0; idx < 64; idx++) {
+            if ((index & (1L << idx)) != 0) {
+                int dim = (length - idx - 1) % dimensions;
+                int shift = (idx / dimensions) % bits;
+                x[dim] |= 1L << shift;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.davidmoten.junit.Asserts;
+
+public class BitsTest {
+
+    @Test
+    public void isUtilClass() {
+        Asserts.assertIsUtilityClass(Bits.class);
+    }
+
+    @Test
+    public void testSpread2() {
+        assertEquals(0b1010001L, Bits.spread(0b1101L, 2));
+        assertEquals(0x5555555555555555L, Bits.spread(0xFFFFFFFFL, 2));
+    }
+
+    @Test
+    public void testSpread3() {
+        assertEquals(0b1001000001L, Bits.spread(0b1101L, 3));
+        assertEquals(0x1249249249249249L, Bits.spread(0x1FFFFFL, 3));
+    }
+
+    @Test
+    public void testSpreadAndCompactMatchPerBitLoops() {
+        Random r = new Random(123);
+        for (int dimensions = 2; dimensions <= 12; dimensions++) {
+            int bits = 63 / dimensions;
+            for (int i = 0; i < 10000; i++) {
+                long x = r.nextLong() & ((1L << bits) - 1);
+                long spread = spreadPerBit(x, dimensions, bits);
+                assertEquals(spread, Bits.spread(x, dimensions));
+                assertEquals(x, Bits.compact(spread, dimensions));
+                long y = r.nextLong() & Long.MAX_VALUE;
+                assertEquals(compactPerBit(y, dimensions), Bits.compact(y, dimensions));
+            }
+        }
+    }
+
+    private static long spreadPerBit(long x, int dimensions, int bits) {
+        long r = 0;
+        for (int k = 0; k < bits; k++) {
+            if ((x & (1L << k)) != 0) {
+                r |= 1L << (k * dimensions);
+            }
+        }
+        return r;
+    }
+
+    private static long compactPerBit(long x, int dimensions) {
+        long r = 0;
+        for (int k = 0; k * dimensions < 64; k++) {
+            if ((x & (1L << (k * dimensions))) != 0) {
+                r |= 1L << k;
+            }
+        }
+        return r;
+    }
+
+}
@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -164,4 +165,53 @@ public class BoxTest {
         }
         throw new AssertionError("value not found: " + Arrays.toString(v));
     }
+    @Test
+    public void testVisitPerimeterEncodedMatchesVisitPerimeter() {
+        Random r = new Random(1);
+        for (int dimensions = 1; dimensions <= 5; dimensions++) {
+            for (int i = 0; i < 50; i++) {
+                long[] a = new long[dimensions];
+                long[] b = new long[dimensions];
+                for (int j = 0; j < dimensions; j++) {
+                    a[j] = r.nextInt(6);
+                    b[j] = r.nextInt(6);
+                }
+                Box box = new Box(a, b);
+                List<Long> expected = new ArrayList<>();
+                box.visitPerimeter(cell -> expected.add(encode(cell)));
+                List<Long> list = new ArrayList<>();
+                box.visitPerimeter(BoxTest::encode, list::add);
+                assertEquals(expected, list);
+
+                expected.clear();
+                list.clear();
+                box.visitCells(cell -> expected.add(encode(cell)));
+                box.visitCells(BoxTest::encode, list::add);
+                assertEquals(expected, list);
+            }
+        }
+    }
+
+    @Test
+    public void testVisitPerimeterEncodedDoesNotAllocatePerCell() {
+        SmallHilbertCurve.Encoder encoder = HilbertCurve.small().bits(10).dimensions(3)
+                .encoder();
+        long[] sum = new long[1];
+        Box small = new Box(new long[] { 1, 2, 3 }, new long[] { 3, 4, 5 });
+        Box large = new Box(new long[] { 1, 2, 3 }, new long[] { 100, 120, 140 });
+        long smallBytes = Allocations.allocatedBytes(20,
+                () -> small.visitPerimeter(encoder::encode, x -> sum[0] += x));
+        long largeBytes = Allocations.allocatedBytes(20,
+                () -> large.visitPerimeter(encoder::encode, x -> sum[0] += x));
+        assertEquals(smallBytes, largeBytes);
+    }
+
+    private static long encode(long[] cell) {
+        long v = 0;
+        for (long x : cell) {
+            v = v * 10 + x;
+        }
+        return v;
+    }
+
 }
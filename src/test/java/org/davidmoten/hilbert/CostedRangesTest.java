@@ -0,0 +1,97 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CostedRangesTest {
+
+    private static final SmallHilbertCurve h = HilbertCurve.small().bits(5).dimensions(2);
+
+    @Test
+    public void testLinearCostMatchesBruteForce() {
+        Random r = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            long[] a = { r.nextInt(32), r.nextInt(32) };
+            long[] b = { r.nextInt(32), r.nextInt(32) };
+            checkAgainstBruteForce(a, b, QueryCost.linear(1 + r.nextInt(20), 1));
+        }
+    }
+
+    @Test
+    public void testUserSuppliedCostMatchesBruteForce() {
+        // seeks get dearer as more are made concurrently
+        QueryCost cost = (ranges, cells) -> ranges * ranges + 0.5 * cells;
+        checkAgainstBruteForce(new long[] { 3, 5 }, new long[] { 20, 27 }, cost);
+        checkAgainstBruteForce(new long[] { 0, 9 }, new long[] { 31, 13 }, cost);
+    }
+
+    private static void checkAgainstBruteForce(long[] a, long[] b, QueryCost cost) {
+        CostedRanges chosen = h.query(a, b, cost);
+        int n = h.query(a, b).size();
+        double best = Double.MAX_VALUE;
+        for (int k = 1; k <= n; k++) {
+            double c = cost.cost(k, cells(h.query(a, b, k)));
+            best = Math.min(best, c);
+        }
+        assertEquals(best, chosen.cost(), 0);
+        assertEquals(chosen.rangeCount(), chosen.ranges().size());
+        assertEquals(cells(chosen.ranges()), chosen.cells());
+        assertEquals(h.query(a, b, chosen.rangeCount()).toList(), chosen.ranges().toList());
+    }
+
+    @Test
+    public void testFreeSeeksGiveExactRanges() {
+        long[] a = { 3, 5 };
+        long[] b = { 20, 27 };
+        CostedRanges chosen = h.query(a, b, QueryCost.linear(0, 1));
+        assertEquals(h.query(a, b).toList(), chosen.ranges().toList());
+        assertEquals(18 * 23, chosen.cells());
+        assertEquals(18 * 23, chosen.cost(), 0);
+    }
+
+    @Test
+    public void testFreeScanningGivesOneRange() {
+        long[] a = { 3, 5 };
+        long[] b = { 20, 27 };
+        CostedRanges chosen = h.query(a, b, QueryCost.linear(1, 0));
+        assertEquals(1, chosen.rangeCount());
+        assertEquals(1, chosen.cost(), 0);
+        Range range = chosen.ranges().toList().get(0);
+        assertEquals(range.high() - range.low() + 1, chosen.cells());
+        assertTrue(chosen.cells() > 18 * 23);
+    }
+
+    @Test
+    public void testJoinsGapsCheaperThanASeek() {
+        // gaps of 2 cells cost less than a seek of 3 so are joined, gaps of 4 are not
+        Ranges exact = new Ranges(0);
+        exact.add(0, 0);
+        exact.add(3, 3);
+        exact.add(8, 8);
+        exact.add(11, 11);
+        CostedRanges chosen = CostedRanges.choose(exact, QueryCost.linear(3, 1));
+        assertEquals(2, chosen.rangeCount());
+        assertEquals(8, chosen.cells());
+        assertEquals(14, chosen.cost(), 0);
+        assertEquals(Range.create(0, 3), chosen.ranges().toList().get(0));
+        assertEquals(Range.create(8, 11), chosen.ranges().toList().get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCostNotAllowed() {
+        QueryCost.linear(-1, 1);
+    }
+
+    private static long cells(Ranges ranges) {
+        long cells = 0;
+        for (Range range : ranges) {
+            cells += range.high() - range.low() + 1;
+        }
+        return cells;
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HilbertCurve2DTest {
+
+    @Test
+    public void testMatchesSmallHilbertCurveExhaustively() {
+        for (int bits = 1; bits <= 6; bits++) {
+            HilbertCurve2D c = HilbertCurve2D.bits(bits);
+            SmallHilbertCurve small = HilbertCurve.small().bits(bits).dimensions(2);
+            for (long x = 0; x <= c.maxOrdinate(); x++) {
+                for (long y = 0; y <= c.maxOrdinate(); y++) {
+                    long index = c.index(x, y);
+                    assertEquals(small.index(x, y), index);
+                    long p = c.point(index);
+                    assertEquals(x, HilbertCurve2D.x(p));
+                    assertEquals(y, HilbertCurve2D.y(p));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesSmallHilbertCurveAtMaximumBits() {
+        HilbertCurve2D c = HilbertCurve2D.bits(31);
+        SmallHilbertCurve small = HilbertCurve.small().bits(31).dimensions(2);
+        Random r = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            long x = r.nextLong() & c.maxOrdinate();
+            long y = r.nextLong() & c.maxOrdinate();
+            long index = c.index(x, y);
+            assertEquals(small.index(x, y), index);
+            long p = c.point(index);
+            assertEquals(x, HilbertCurve2D.x(p));
+            assertEquals(y, HilbertCurve2D.y(p));
+        }
+        assertEquals(c.maxOrdinate(), HilbertCurve2D.x(c.point(c.maxIndex())));
+    }
+
+    @Test
+    public void testGetters() {
+        HilbertCurve2D c = HilbertCurve2D.bits(5);
+        assertEquals(5, c.bits());
+        assertEquals(31, c.maxOrdinate());
+        assertEquals(1023, c.maxIndex());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyBits() {
+        HilbertCurve2D.bits(32);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBitsPositive() {
+        HilbertCurve2D.bits(0);
+    }
+
+}
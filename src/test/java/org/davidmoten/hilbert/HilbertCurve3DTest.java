@@ -0,0 +1,62 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HilbertCurve3DTest {
+
+    @Test
+    public void testMatchesSmallHilbertCurveExhaustively() {
+        for (int bits = 1; bits <= 4; bits++) {
+            HilbertCurve3D c = HilbertCurve3D.bits(bits);
+            SmallHilbertCurve small = HilbertCurve.small().bits(bits).dimensions(3);
+            for (long x = 0; x <= c.maxOrdinate(); x++) {
+                for (long y = 0; y <= c.maxOrdinate(); y++) {
+                    for (long z = 0; z <= c.maxOrdinate(); z++) {
+                        long index = c.index(x, y, z);
+                        assertEquals(small.index(x, y, z), index);
+                        long p = c.point(index);
+                        assertEquals(x, HilbertCurve3D.x(p));
+                        assertEquals(y, HilbertCurve3D.y(p));
+                        assertEquals(z, HilbertCurve3D.z(p));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesSmallHilbertCurveAtMaximumBits() {
+        HilbertCurve3D c = HilbertCurve3D.bits(21);
+        SmallHilbertCurve small = HilbertCurve.small().bits(21).dimensions(3);
+        Random r = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            long x = r.nextLong() & c.maxOrdinate();
+            long y = r.nextLong() & c.maxOrdinate();
+            long z = r.nextLong() & c.maxOrdinate();
+            long index = c.index(x, y, z);
+            assertEquals(small.index(x, y, z), index);
+            long p = c.point(index);
+            assertEquals(x, HilbertCurve3D.x(p));
+            assertEquals(y, HilbertCurve3D.y(p));
+            assertEquals(z, HilbertCurve3D.z(p));
+        }
+    }
+
+    @Test
+    public void testGetters() {
+        HilbertCurve3D c = HilbertCurve3D.bits(5);
+        assertEquals(5, c.bits());
+        assertEquals(31, c.maxOrdinate());
+        assertEquals(32767, c.maxIndex());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyBits() {
+        HilbertCurve3D.bits(22);
+    }
+
+}
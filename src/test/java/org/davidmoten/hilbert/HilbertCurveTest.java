@@ -1,6 +1,7 @@
 package org.davidmoten.hilbert;
 
 import static org.davidmoten.hilbert.GeoUtil.scalePoint;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -8,13 +9,19 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.List;
+import java.util.Random;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
@@ -284,6 +291,86 @@ public class HilbertCurveTest {
         return value == c.index(point);
     }
 
+    @Test
+    public void testBulkIndexSmall() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(3);
+        int n = 100;
+        long[] points = new long[n * 3];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = (i * 7919L) % 32;
+        }
+        long[] out = new long[n];
+        c.index(points, 0, n, out);
+        for (int i = 0; i < n; i++) {
+            assertEquals(c.index(Arrays.copyOfRange(points, i * 3, i * 3 + 3)), out[i]);
+        }
+    }
+
+    @Test
+    public void testBulkIndexSmallLongBufferWithOffset() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(2);
+        long[] points = { 1, 2, 3, 4, 5, 6, 7, 8 };
+        LongBuffer buffer = ByteBuffer.allocateDirect(points.length * Long.BYTES).asLongBuffer();
+        buffer.put(points);
+        long[] out = new long[4];
+        c.index(buffer, 1, 2, out);
+        assertEquals(0, out[0]);
+        assertEquals(c.index(3, 4), out[1]);
+        assertEquals(c.index(5, 6), out[2]);
+        assertEquals(0, out[3]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkIndexSmallNotEnoughOrdinates() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(2);
+        c.index(new long[3], 0, 2, new long[2]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkIndexSmallOutputTooSmall() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(2);
+        c.index(new long[4], 0, 2, new long[1]);
+    }
+
+    @Test
+    public void testBulkPointsSmall() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(3);
+        long[] indexes = new long[] { 0, 1, 2, 1000, 32767 };
+        long[] out = new long[indexes.length * 3];
+        c.points(indexes, 1, 3, out);
+        assertArrayEquals(new long[3], Arrays.copyOfRange(out, 0, 3));
+        for (int i = 1; i < 4; i++) {
+            assertArrayEquals(c.point(indexes[i]), Arrays.copyOfRange(out, i * 3, i * 3 + 3));
+        }
+        assertArrayEquals(new long[3], Arrays.copyOfRange(out, 12, 15));
+    }
+
+    @Test
+    public void testBulkPointsSmallColumns() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(3);
+        long[] indexes = new long[] { 0, 1, 2, 1000, 32767 };
+        long[][] columns = new long[3][indexes.length];
+        c.points(indexes, 0, indexes.length, columns);
+        for (int i = 0; i < indexes.length; i++) {
+            long[] p = c.point(indexes[i]);
+            for (int j = 0; j < 3; j++) {
+                assertEquals(p[j], columns[j][i]);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkPointsSmallColumnsWrongNumberOfColumns() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(3);
+        c.points(new long[1], 0, 1, new long[2][1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkPointsSmallOutputTooSmall() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(3);
+        c.points(new long[2], 0, 2, new long[5]);
+    }
+
     @Test
     public void testSmallQueryPerimeterAlgorithm() {
         Ranges r = small.query(point(0, 0), point(1, 1));
@@ -520,4 +607,229 @@ public class HilbertCurveTest {
         }
     }
 
+    @Test
+    public void testQueryMultipleBoxesMatchesUnionOfCells() {
+        Random r = new Random(5);
+        for (int dimensions = 2; dimensions <= 4; dimensions++) {
+            SmallHilbertCurve h = HilbertCurve.small().bits(4).dimensions(dimensions);
+            for (int i = 0; i < 50; i++) {
+                List<long[][]> boxes = new ArrayList<>();
+                BitSet cells = new BitSet();
+                int n = 1 + r.nextInt(5);
+                for (int j = 0; j < n; j++) {
+                    long[] a = new long[dimensions];
+                    long[] b = new long[dimensions];
+                    for (int k = 0; k < dimensions; k++) {
+                        a[k] = r.nextInt(16);
+                        b[k] = r.nextInt(16);
+                    }
+                    boxes.add(new long[][] { a, b });
+                    new Box(a, b).visitCells(cell -> cells.set((int) h.index(cell)));
+                }
+                Ranges expected = new Ranges(0);
+                int k = cells.nextSetBit(0);
+                while (k >= 0) {
+                    int end = cells.nextClearBit(k);
+                    expected.add(k, end - 1);
+                    k = cells.nextSetBit(end);
+                }
+                assertEquals(expected.toList(), h.query(boxes, 0).toList());
+
+                // maxRanges applies to the combined ranges
+                Ranges reduced = new Ranges(3);
+                expected.forEach(reduced::add);
+                assertEquals(reduced.toList(), h.query(boxes, 3).toList());
+            }
+        }
+    }
+
+    @Test
+    public void testQueryMultipleBoxesSameAsUnionOfQueries() {
+        SmallHilbertCurve h = HilbertCurve.small().bits(10).dimensions(3);
+        long[] a1 = { 100, 100, 100 };
+        long[] b1 = { 200, 250, 300 };
+        long[] a2 = { 150, 200, 250 };
+        long[] b2 = { 400, 300, 350 };
+        RangeSet union = h.query(a1, b1).toRangeSet().union(h.query(a2, b2).toRangeSet());
+        assertEquals(union.toList(), h.query(Arrays.asList(new long[][] { a1, b1 },
+                new long[][] { a2, b2 }), 0).toList());
+    }
+
+    @Test
+    public void testQueryNoBoxes() {
+        SmallHilbertCurve h = HilbertCurve.small().bits(10).dimensions(3);
+        assertEquals(0, h.query(new ArrayList<>(), 10).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQueryMultipleBoxesWrongDimensions() {
+        SmallHilbertCurve h = HilbertCurve.small().bits(10).dimensions(3);
+        h.query(Arrays.<long[][]>asList(new long[][] { { 1, 2 }, { 3, 4 } }), 0);
+    }
+
+    @Test
+    public void testQueryAllSameAsQuery() throws InterruptedException {
+        SmallHilbertCurve h = HilbertCurve.small().bits(8).dimensions(3);
+        Random r = new Random(6);
+        List<long[][]> boxes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            long[] a = new long[3];
+            long[] b = new long[3];
+            for (int j = 0; j < 3; j++) {
+                a[j] = r.nextInt(256);
+                b[j] = Math.min(255, a[j] + r.nextInt(40));
+            }
+            boxes.add(new long[][] { a, b });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<Ranges>> futures = h.queryAll(boxes, 8, executor);
+            assertEquals(boxes.size(), futures.size());
+            for (int i = 0; i < boxes.size(); i++) {
+                long[][] box = boxes.get(i);
+                assertEquals(h.query(box[0], box[1], 8).toList(), futures.get(i).join().toList());
+            }
+            long[][] box = boxes.get(0);
+            assertEquals(h.query(box[0], box[1]).toList(),
+                    h.queryAsync(box[0], box[1], 0, executor).join().toList());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testToIndexAndTransposeMatchBitByBitInterleaving() {
+        Random r = new Random(3);
+        int[] dims = { 2, 3, 4, 5, 7, 8, 16, 20, 63, 64, 65, 100 };
+        for (int dimensions : dims) {
+            for (int bits : new int[] { 1, 2, 7, 31, 32, 33, 63 }) {
+                HilbertCurve c = HilbertCurve.bits(bits).dimensions(dimensions);
+                for (int k = 0; k < 5; k++) {
+                    long[] ti = new long[dimensions];
+                    for (int j = 0; j < dimensions; j++) {
+                        ti[j] = r.nextLong() & ((1L << bits) - 1);
+                    }
+                    // reference: bit for ordinate j at level i is index bit i * n + n - 1 - j
+                    BigInteger expected = BigInteger.ZERO;
+                    for (int i = 0; i < bits; i++) {
+                        for (int j = 0; j < dimensions; j++) {
+                            if ((ti[j] & (1L << i)) != 0) {
+                                expected = expected.setBit(i * dimensions + dimensions - 1 - j);
+                            }
+                        }
+                    }
+                    BigInteger index = c.toIndex(ti);
+                    assertEquals(expected, index);
+                    assertArrayEquals(ti, c.transpose(index));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPointAndIndexRoundTripWideCurve() {
+        HilbertCurve c = HilbertCurve.bits(32).dimensions(20);
+        Random r = new Random(4);
+        long[] x = new long[20];
+        for (int k = 0; k < 100; k++) {
+            long[] point = new long[20];
+            for (int j = 0; j < point.length; j++) {
+                point[j] = r.nextLong() & 0xFFFFFFFFL;
+            }
+            BigInteger index = c.index(point);
+            c.point(index, x);
+            assertArrayEquals(point, x);
+        }
+    }
+
+    @Test
+    public void testEncoderAndDecoderRoundTrip() {
+        HilbertCurve c = HilbertCurve.bits(32).dimensions(20);
+        HilbertCurve.Encoder encoder = c.encoder();
+        HilbertCurve.Decoder decoder = c.decoder();
+        assertEquals(10, encoder.words());
+        assertEquals(10, decoder.words());
+        Random r = new Random(5);
+        long[] index = new long[encoder.words()];
+        long[] x = new long[20];
+        for (int k = 0; k < 100; k++) {
+            long[] point = new long[20];
+            for (int j = 0; j < point.length; j++) {
+                point[j] = r.nextLong() & 0xFFFFFFFFL;
+            }
+            encoder.encode(point, index);
+            assertEquals(c.index(point), HilbertCurve.toBigInteger(index, new byte[80]));
+            decoder.decode(index, x);
+            assertArrayEquals(point, x);
+        }
+    }
+
+    @Test
+    public void testEncoderAndDecoderDoNotAllocate() {
+        HilbertCurve c = HilbertCurve.bits(32).dimensions(20);
+        HilbertCurve.Encoder encoder = c.encoder();
+        HilbertCurve.Decoder decoder = c.decoder();
+        long[] point = new long[20];
+        Arrays.fill(point, 123456789L);
+        long[] index = new long[encoder.words()];
+        long[] x = new long[20];
+        assertEquals(0, Allocations.allocatedBytes(100000, () -> {
+            encoder.encode(point, index);
+            decoder.decode(index, x);
+        }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncoderIndexArrayTooSmall() {
+        HilbertCurve.bits(32).dimensions(3).encoder().encode(new long[3], new long[1]);
+    }
+
+    @Test
+    public void testSmallEncoderAndDecoder() {
+        for (int dimensions = 2; dimensions <= 5; dimensions++) {
+            SmallHilbertCurve c = HilbertCurve.small().bits(10).dimensions(dimensions);
+            SmallHilbertCurve.Encoder encoder = c.encoder();
+            SmallHilbertCurve.Decoder decoder = c.decoder();
+            long[] x = new long[dimensions];
+            for (long i = 0; i < 1000; i++) {
+                long[] point = c.point(i * 997);
+                assertEquals(i * 997, encoder.encode(point));
+                decoder.decode(i * 997, x);
+                assertArrayEquals(point, x);
+            }
+        }
+    }
+
+    @Test
+    public void testSmallEncoderAndDecoderDoNotAllocate() {
+        for (int dimensions = 2; dimensions <= 5; dimensions++) {
+            SmallHilbertCurve c = HilbertCurve.small().bits(10).dimensions(dimensions);
+            SmallHilbertCurve.Encoder encoder = c.encoder();
+            SmallHilbertCurve.Decoder decoder = c.decoder();
+            long[] point = c.point(12345);
+            long[] x = new long[dimensions];
+            assertEquals(0, Allocations.allocatedBytes(100000, () -> {
+                decoder.decode(encoder.encode(point), x);
+            }));
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testDeprecatedBufferSizeOverloadIgnoresBufferSize() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(2);
+        long[] a = { 3, 3 };
+        long[] b = { 8, 10 };
+        List<Range> expected = c.query(a, b, 2).toList();
+        assertEquals(expected, c.query(a, b, 2, 100).toList());
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeprecatedBufferSizeLessThanMaxRangesThrows() {
+        HilbertCurve.small().bits(5).dimensions(2).query(new long[] { 1, 1 },
+                new long[] { 2, 2 }, 3, 2);
+    }
+
 }
@@ -0,0 +1,56 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongListTest {
+
+    @Test
+    public void testAddGrowsAndGet() {
+        LongList list = new LongList(1);
+        for (int i = 0; i < 1000; i++) {
+            list.add(i * 3);
+        }
+        assertEquals(1000, list.size());
+        assertEquals(2997, list.get(999));
+        list.clear();
+        assertEquals(0, list.size());
+    }
+
+    @Test
+    public void testRadixSortMatchesArraysSort() {
+        Random r = new Random(1);
+        for (int significantBits : new int[] { 1, 7, 8, 9, 30, 63 }) {
+            for (int size : new int[] { 0, 1, 10, 255, 256, 1000, 100000 }) {
+                long mask = significantBits == 63 ? Long.MAX_VALUE : (1L << significantBits) - 1;
+                LongList list = new LongList();
+                for (int i = 0; i < size; i++) {
+                    list.add(r.nextLong() & mask);
+                }
+                long[] expected = Arrays.copyOf(list.array(), size);
+                Arrays.sort(expected);
+                list.sort(significantBits);
+                assertArrayEquals(expected, Arrays.copyOf(list.array(), size));
+            }
+        }
+    }
+
+    @Test
+    public void testRadixSortSkipsConstantDigits() {
+        LongList list = new LongList();
+        for (int i = 1000; i > 0; i--) {
+            // only the middle byte varies
+            list.add(((long) (i % 256) << 16) | 0xFF00FFL);
+        }
+        long[] expected = Arrays.copyOf(list.array(), list.size());
+        Arrays.sort(expected);
+        list.sort(40);
+        assertArrayEquals(expected, Arrays.copyOf(list.array(), list.size()));
+    }
+
+}
@@ -0,0 +1,197 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MediumHilbertCurveTest {
+
+    @Test
+    public void testMatchesHilbertCurve() {
+        Random r = new Random(1);
+        for (int dimensions = 2; dimensions <= 12; dimensions++) {
+            for (int bits = 1; bits <= 63 && bits * dimensions <= 128; bits++) {
+                HilbertCurve h = HilbertCurve.bits(bits).dimensions(dimensions);
+                MediumHilbertCurve c = HilbertCurve.medium().bits(bits).dimensions(dimensions);
+                for (int i = 0; i < 100; i++) {
+                    long[] point = new long[dimensions];
+                    for (int j = 0; j < dimensions; j++) {
+                        point[j] = r.nextLong() & c.maxOrdinate();
+                    }
+                    BigInteger index = h.index(point);
+                    assertEquals(index, c.index(point));
+                    long[] hiLo = new long[2];
+                    c.index(point, hiLo);
+                    assertEquals(index, MediumHilbertCurve.toBigInteger(hiLo[0], hiLo[1]));
+                    assertArrayEquals(point, c.point(hiLo[0], hiLo[1]));
+                    assertArrayEquals(point, c.point(index));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMaxIndex() {
+        // bits * dimensions of 64, 65 and 128
+        checkMaxIndex(HilbertCurve.medium().bits(32).dimensions(2), 0L, -1L);
+        checkMaxIndex(HilbertCurve.medium().bits(13).dimensions(5), 1L, -1L);
+        checkMaxIndex(HilbertCurve.medium().bits(32).dimensions(4), -1L, -1L);
+        checkMaxIndex(HilbertCurve.medium().bits(20).dimensions(3), 0L, (1L << 60) - 1);
+    }
+
+    private static void checkMaxIndex(MediumHilbertCurve c, long hi, long lo) {
+        assertArrayEquals(new long[] { hi, lo }, c.maxIndex());
+        assertEquals(BigInteger.ONE.shiftLeft(c.bits() * c.dimensions()).subtract(BigInteger.ONE),
+                MediumHilbertCurve.toBigInteger(hi, lo));
+        // the last point of the curve has the maximum index
+        long[] index = new long[2];
+        c.index(c.point(hi, lo), index);
+        assertArrayEquals(new long[] { hi, lo }, index);
+    }
+
+    @Test
+    public void testMaximumIndex() {
+        MediumHilbertCurve c = HilbertCurve.medium().bits(32).dimensions(4);
+        long[] point = c.point(-1L, -1L);
+        long[] index = new long[2];
+        c.index(point, index);
+        assertEquals(-1L, index[0]);
+        assertEquals(-1L, index[1]);
+        assertEquals(BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE),
+                c.index(point));
+    }
+
+    @Test
+    public void testToBigIntegerAndCompare() {
+        assertEquals(BigInteger.ONE.shiftLeft(64), MediumHilbertCurve.toBigInteger(1, 0));
+        assertEquals(new BigInteger("ffffffffffffffff", 16), MediumHilbertCurve.toBigInteger(0, -1));
+        assertTrue(MediumHilbertCurve.compare(0, -1, 1, 0) < 0);
+        assertTrue(MediumHilbertCurve.compare(-1, 0, 1, 0) > 0);
+        assertEquals(0, MediumHilbertCurve.compare(3, 4, 3, 4));
+    }
+
+    @Test
+    public void testQueryMatchesSmallHilbertCurve() {
+        Random r = new Random(2);
+        for (int dimensions = 2; dimensions <= 3; dimensions++) {
+            int bits = 5;
+            SmallHilbertCurve small = HilbertCurve.small().bits(bits).dimensions(dimensions);
+            MediumHilbertCurve c = HilbertCurve.medium().bits(bits).dimensions(dimensions);
+            for (int i = 0; i < 50; i++) {
+                long[] a = new long[dimensions];
+                long[] b = new long[dimensions];
+                for (int j = 0; j < dimensions; j++) {
+                    a[j] = r.nextInt(32);
+                    b[j] = r.nextInt(32);
+                }
+                List<Range> expected = small.query(a, b).toList();
+                List<Range128> ranges = c.query(a, b);
+                assertEquals(expected.size(), ranges.size());
+                for (int k = 0; k < ranges.size(); k++) {
+                    assertEquals(0, ranges.get(k).lowHi());
+                    assertEquals(expected.get(k).low(), ranges.get(k).lowLo());
+                    assertEquals(expected.get(k).high(), ranges.get(k).highLo());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testQueryWithMaxRangesMatchesSmallHilbertCurve() {
+        Random r = new Random(3);
+        SmallHilbertCurve small = HilbertCurve.small().bits(5).dimensions(3);
+        MediumHilbertCurve c = HilbertCurve.medium().bits(5).dimensions(3);
+        for (int i = 0; i < 100; i++) {
+            long[] a = { r.nextInt(32), r.nextInt(32), r.nextInt(32) };
+            long[] b = { r.nextInt(32), r.nextInt(32), r.nextInt(32) };
+            int maxRanges = 1 + r.nextInt(6);
+            List<Range> expected = small.query(a, b, maxRanges).toList();
+            List<Range128> ranges = c.query(a, b, maxRanges);
+            assertEquals(expected.size(), ranges.size());
+            for (int k = 0; k < ranges.size(); k++) {
+                assertEquals(expected.get(k).low(), ranges.get(k).lowLo());
+                assertEquals(expected.get(k).high(), ranges.get(k).highLo());
+            }
+        }
+    }
+
+    @Test
+    public void testQueryWithMaxRangesCoversExactRanges() {
+        MediumHilbertCurve c = HilbertCurve.medium().bits(30).dimensions(4);
+        long[] a = { 1000, 2000, 3000, 4000 };
+        long[] b = { 1010, 2012, 3014, 4016 };
+        List<Range128> exact = c.query(a, b);
+        assertTrue(exact.size() > 8);
+        List<Range128> ranges = c.query(a, b, 8);
+        assertEquals(8, ranges.size());
+        assertEquals(exact.get(0).low(), ranges.get(0).low());
+        assertEquals(exact.get(exact.size() - 1).high(), ranges.get(7).high());
+        for (Range128 e : exact) {
+            assertTrue(ranges.stream().anyMatch(
+                    x -> x.contains(e.lowHi(), e.lowLo()) && x.contains(e.highHi(), e.highLo())));
+        }
+    }
+
+    @Test
+    public void testQueryCountsCellsInBox() {
+        MediumHilbertCurve c = HilbertCurve.medium().bits(40).dimensions(3);
+        long[] a = { 5, 1L << 39, 17 };
+        long[] b = { 9, (1L << 39) + 3, 20 };
+        BigInteger count = BigInteger.ZERO;
+        for (Range128 range : c.query(a, b)) {
+            count = count.add(range.high().subtract(range.low()).add(BigInteger.ONE));
+        }
+        assertEquals(BigInteger.valueOf(5 * 4 * 4), count);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyBits() {
+        HilbertCurve.medium().bits(33).dimensions(4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPointWrongLength() {
+        HilbertCurve.medium().bits(33).dimensions(3).index(1, 2);
+    }
+
+    @Test
+    public void testEncoderAndDecoder() {
+        MediumHilbertCurve c = HilbertCurve.medium().bits(20).dimensions(5);
+        MediumHilbertCurve.Encoder encoder = c.encoder();
+        MediumHilbertCurve.Decoder decoder = c.decoder();
+        Random r = new Random(3);
+        long[] index = new long[2];
+        long[] x = new long[5];
+        for (int i = 0; i < 1000; i++) {
+            long[] point = new long[5];
+            for (int j = 0; j < 5; j++) {
+                point[j] = r.nextLong() & c.maxOrdinate();
+            }
+            encoder.encode(point, index);
+            assertEquals(c.index(point), MediumHilbertCurve.toBigInteger(index[0], index[1]));
+            decoder.decode(index[0], index[1], x);
+            assertArrayEquals(point, x);
+        }
+    }
+
+    @Test
+    public void testEncoderAndDecoderDoNotAllocate() {
+        MediumHilbertCurve c = HilbertCurve.medium().bits(32).dimensions(4);
+        MediumHilbertCurve.Encoder encoder = c.encoder();
+        MediumHilbertCurve.Decoder decoder = c.decoder();
+        long[] point = { 1, 2, 3, 4 };
+        long[] index = new long[2];
+        long[] x = new long[4];
+        assertEquals(0, Allocations.allocatedBytes(100000, () -> {
+            encoder.encode(point, index);
+            decoder.decode(index[0], index[1], x);
+        }));
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ParallelPerimeterTest {
+
+    @Test
+    public void testSameRangesAsSerialQuery() {
+        Random r = new Random(1);
+        for (int dimensions = 2; dimensions <= 4; dimensions++) {
+            SmallHilbertCurve c = HilbertCurve.small().bits(6).dimensions(dimensions);
+            for (int i = 0; i < 20; i++) {
+                long[] a = new long[dimensions];
+                long[] b = new long[dimensions];
+                for (int j = 0; j < dimensions; j++) {
+                    a[j] = r.nextInt(64);
+                    b[j] = r.nextInt(64);
+                }
+                assertEquals(c.query(a, b, 0).toList(), c.queryParallel(a, b, 0).toList());
+                assertEquals(c.query(a, b, 3).toList(), c.queryParallel(a, b, 3).toList());
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBoxSplitIntoSlabsIsDeterministic() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(10).dimensions(3);
+        long[] a = { 100, 200, 300 };
+        long[] b = { 399, 499, 599 };
+        List<Range> expected = c.query(a, b).toList();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected, c.queryParallel(a, b, 0, executor).toList());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(expected, c.queryParallel(a, b, 0, Runnable::run).toList());
+    }
+
+    @Test
+    public void testAsyncQueryFromTaskOnSameSingleThreadPool() throws Exception {
+        SmallHilbertCurve c = HilbertCurve.small().bits(10).dimensions(3);
+        long[] a = { 100, 200, 300 };
+        long[] b = { 399, 499, 599 };
+        List<Range> expected = c.query(a, b).toList();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // a blocking queryParallel here would wait forever for its own tasks
+            CompletableFuture<Ranges> ranges = CompletableFuture
+                    .supplyAsync(() -> c.queryParallelAsync(a, b, 0, executor), executor)
+                    .thenCompose(x -> x);
+            assertEquals(expected, ranges.get(30, TimeUnit.SECONDS).toList());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFacesVisitSameCellsAsBoxPerimeter() {
+        long[] mins = { 1, 2, 3 };
+        long[] maxes = { 4, 4, 8 };
+        List<long[]> expected = new ArrayList<>();
+        new Box(mins, maxes).visitPerimeter(x -> expected.add(x.clone()));
+        List<long[]> cells = new ArrayList<>();
+        for (long[][] face : ParallelPerimeter.faces(mins, maxes)) {
+            new Box(face[0], face[1]).visitCells(x -> cells.add(x.clone()));
+        }
+        assertEquals(expected.size(), cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            assertArrayEquals(expected.get(i), cells.get(i));
+        }
+    }
+
+    @Test
+    public void testDegenerateBox() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(3);
+        long[] a = { 3, 5, 7 };
+        long[] b = { 3, 9, 7 };
+        assertEquals(c.query(a, b).toList(), c.queryParallel(a, b, 0).toList());
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.davidmoten.hilbert;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Scaling of the parallel perimeter query with the number of threads. Compare
+ * with {@link #querySerial()} for the same box.
+ */
+@State(Scope.Benchmark)
+public class ParallelQueryBenchmarks {
+
+    @Param({ "1", "2", "4", "8", "16" })
+    public int threads;
+
+    @Param({ "3", "4" })
+    public int dimensions;
+
+    private SmallHilbertCurve curve;
+    private long[] a;
+    private long[] b;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        // about 5 * 10^5 perimeter cells in both cases
+        if (dimensions == 3) {
+            curve = HilbertCurve.small().bits(10).dimensions(3);
+            a = new long[] { 100, 200, 300 };
+            b = new long[] { 399, 499, 599 };
+        } else {
+            curve = HilbertCurve.small().bits(10).dimensions(4);
+            a = new long[] { 100, 200, 300, 400 };
+            b = new long[] { 139, 239, 339, 439 };
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Ranges querySerial() {
+        return curve.query(a, b);
+    }
+
+    @Benchmark
+    public Ranges queryParallel() {
+        return curve.queryParallel(a, b, 0, pool);
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class QueryBuffersTest {
+
+    @Test
+    public void testReleasedBuffersAreReusedAndCleared() {
+        // other tests may have left buffers in the shared pool
+        QueryBuffers.clearPool();
+        QueryBuffers b = QueryBuffers.acquire();
+        b.indexes.add(1);
+        b.release();
+        QueryBuffers b2 = QueryBuffers.acquire();
+        assertSame(b, b2);
+        assertEquals(0, b2.indexes.size());
+        b2.release();
+    }
+
+    @Test
+    public void testLargeBufferIsNotKept() {
+        QueryBuffers.clearPool();
+        QueryBuffers b = QueryBuffers.acquire();
+        // grows the indexes to 1M longs (8MB)
+        for (int i = 0; i < 1 << 20; i++) {
+            b.indexes.add(i);
+        }
+        b.release();
+        assertEquals(0, QueryBuffers.pooledLongs());
+        assertNotSame(b, QueryBuffers.acquire());
+    }
+
+    @Test
+    public void testPoolCountsRetainedLongs() {
+        QueryBuffers.clearPool();
+        QueryBuffers b = QueryBuffers.acquire();
+        b.release();
+        assertEquals(b.indexes.retainedLongs(), QueryBuffers.pooledLongs());
+        QueryBuffers.acquire();
+        assertEquals(0, QueryBuffers.pooledLongs());
+    }
+
+    @Test
+    public void testQueryReusesPerimeterBuffers() {
+        SmallHilbertCurve h = HilbertCurve.small().bits(10).dimensions(3);
+        long[] a = { 100, 100, 100 };
+        long[] b = { 200, 250, 300 };
+        // the perimeter has about 130,000 cells (1MB of indexes) but only the
+        // result (at most 8 ranges are ever buffered) is allocated
+        long bytes = Allocations.allocatedBytes(10, () -> h.query(a, b, 8)) / 10;
+        assertTrue(String.valueOf(bytes), bytes < 200000);
+    }
+
+}
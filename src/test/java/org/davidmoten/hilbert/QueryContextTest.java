@@ -0,0 +1,119 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QueryContextTest {
+
+    @Test
+    public void testSameAsQueryForRandomBoxes() {
+        checkSameAsQuery(HilbertCurve.small().bits(5).dimensions(2));
+        checkSameAsQuery(HilbertCurve.small().bits(4).dimensions(3));
+        // no state table for 4 dimensions
+        checkSameAsQuery(HilbertCurve.small().bits(3).dimensions(4));
+    }
+
+    private static void checkSameAsQuery(SmallHilbertCurve h) {
+        QueryContext context = h.queryContext();
+        Random r = new Random(1);
+        long max = h.maxOrdinate();
+        for (int i = 0; i < 300; i++) {
+            long[] a = new long[h.dimensions()];
+            long[] b = new long[h.dimensions()];
+            for (int j = 0; j < a.length; j++) {
+                a[j] = (long) (r.nextDouble() * (max + 1));
+                b[j] = (long) (r.nextDouble() * (max + 1));
+            }
+            // alternate big and small limits so the buffers are reused in both modes
+            int maxRanges = i % 3 == 0 ? 0 : 1 + r.nextInt(10);
+            List<Range> expected = h.query(a, b, maxRanges).toList();
+            assertEquals(expected, context.query(a, b, maxRanges).toList());
+            List<Range> list = new ArrayList<>();
+            context.query(a, b, maxRanges, (low, high) -> list.add(Range.create(low, high)));
+            assertEquals(expected, list);
+        }
+    }
+
+    @Test
+    public void testResultCanBeExtended() {
+        SmallHilbertCurve h = HilbertCurve.small().bits(5).dimensions(2);
+        QueryContext context = h.queryContext();
+        Ranges r = context.query(new long[] { 0, 0 }, new long[] { 1, 1 }, 0);
+        r.add(100, 101);
+        assertEquals(2, r.size());
+        assertEquals(Range.create(100, 101), r.toList().get(1));
+    }
+
+    @Test
+    public void testReset() {
+        SmallHilbertCurve h = HilbertCurve.small().bits(5).dimensions(2);
+        QueryContext context = h.queryContext();
+        context.query(new long[] { 0, 0 }, new long[] { 10, 10 }, 3);
+        context.reset();
+        assertEquals(h.query(new long[] { 1, 1 }, new long[] { 2, 2 }, 0).toList(),
+                context.query(new long[] { 1, 1 }, new long[] { 2, 2 }, 0).toList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongDimensions() {
+        HilbertCurve.small().bits(5).dimensions(2).queryContext().query(new long[] { 1 },
+                new long[] { 2 }, 0);
+    }
+
+    @Test
+    public void testQueryWithConsumerAllocatesNothing() {
+        checkAllocatesNothing(HilbertCurve.small().bits(10).dimensions(3));
+        checkAllocatesNothing(HilbertCurve.small().bits(6).dimensions(5));
+    }
+
+    private static void checkAllocatesNothing(SmallHilbertCurve h) {
+        QueryContext context = h.queryContext();
+        long[] a = new long[h.dimensions()];
+        long[] b = new long[h.dimensions()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = h.maxOrdinate() / 5;
+            b[i] = h.maxOrdinate() / 3;
+        }
+        long[] total = new long[1];
+        RangeConsumer consumer = (low, high) -> total[0] += high - low + 1;
+        long bytes = Allocations.allocatedBytes(10, () -> {
+            context.query(a, b, 8, consumer);
+            context.query(a, b, 0, consumer);
+        });
+        assertEquals(0, bytes);
+        assertTrue(total[0] > 0);
+    }
+
+    @Test
+    public void testQueryAllocatesOnlyResult() {
+        SmallHilbertCurve h = HilbertCurve.small().bits(10).dimensions(3);
+        QueryContext context = h.queryContext();
+        long[] a = { 100, 100, 100 };
+        long[] b = { 200, 250, 300 };
+        // two arrays of 8 longs, the histogram of 64 longs and the Ranges object
+        long bytes = Allocations.allocatedBytes(10, () -> context.query(a, b, 8)) / 10;
+        assertTrue(String.valueOf(bytes), bytes <= 1024);
+    }
+
+    @Test
+    public void testMergedGapHistogramIsCopiedToTheResult() {
+        SmallHilbertCurve h = HilbertCurve.small().bits(10).dimensions(3);
+        QueryContext context = h.queryContext();
+        long[] a = { 100, 100, 100 };
+        long[] b = { 200, 250, 300 };
+        Ranges expected = h.query(a, b, 8);
+        Ranges ranges = context.query(a, b, 8);
+        assertEquals(expected.mergedGapCount(), ranges.mergedGapCount());
+        assertEquals(expected.exactCells(), ranges.exactCells());
+        assertEquals(expected.coveredCells(), ranges.coveredCells());
+        assertArrayEquals(expected.mergedGapHistogram(), ranges.mergedGapHistogram());
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.davidmoten.hilbert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of query instrumentation. {@link #queryNotInstrumented()} is the default
+ * curve and should match the throughput of an uninstrumented build,
+ * {@link #queryNoOpListener()} measures the timing calls alone and
+ * {@link #queryFlightRecorderNotRecording()} the JFR listener when no recording
+ * is running.
+ */
+@State(Scope.Benchmark)
+public class QueryListenerBenchmarks {
+
+    private static final long[] A = { 100, 100, 100 };
+    private static final long[] B = { 104, 106, 108 };
+
+    private final SmallHilbertCurve curve = HilbertCurve.small().bits(10).dimensions(3);
+    private final SmallHilbertCurve noOp = curve.withListener(new QueryListener() {
+    });
+    private final SmallHilbertCurve flightRecorder = curve
+            .withListener(QueryListener.flightRecorder());
+    private final QueryContext context = curve.queryContext();
+
+    @Benchmark
+    public Ranges queryNotInstrumented() {
+        return curve.query(A, B, 8);
+    }
+
+    @Benchmark
+    public Ranges queryNoOpListener() {
+        return noOp.query(A, B, 8);
+    }
+
+    @Benchmark
+    public Ranges queryFlightRecorderNotRecording() {
+        return flightRecorder.query(A, B, 8);
+    }
+
+    @Benchmark
+    public Ranges queryContextNotInstrumented() {
+        return context.query(A, B, 8);
+    }
+
+}
@@ -0,0 +1,147 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class QueryListenerTest {
+
+    private static final SmallHilbertCurve h = HilbertCurve.small().bits(5).dimensions(2);
+    private static final long[] a = { 3, 3 };
+    private static final long[] b = { 8, 10 };
+
+    @Test
+    public void testListenerReceivesEachPhase() {
+        RecordingListener listener = new RecordingListener();
+        Ranges ranges = h.withListener(listener).query(a, b, 2);
+        checkReported(listener, ranges);
+    }
+
+    @Test
+    public void testQueryContextReportsToListener() {
+        RecordingListener listener = new RecordingListener();
+        Ranges ranges = h.withListener(listener).queryContext().query(a, b, 2);
+        checkReported(listener, ranges);
+    }
+
+    private static void checkReported(RecordingListener listener, Ranges ranges) {
+        assertEquals(h.query(a, b, 2).toList(), ranges.toList());
+        // perimeter of a 6x8 box
+        assertEquals(24, listener.perimeterCells);
+        assertEquals(24, listener.sortedCells);
+        assertEquals(h.query(a, b).size(), listener.exactRanges);
+        assertEquals(h.query(a, b).size() - 2, listener.mergedGaps);
+        assertEquals(2, listener.ranges);
+        assertEquals(48, listener.exactCells);
+        assertEquals(ranges.coveredCells(), listener.coveredCells);
+        assertTrue(listener.nanos >= 0);
+    }
+
+    @Test
+    public void testDefaultMethodsDoNothing() {
+        QueryListener listener = new QueryListener() {
+        };
+        assertEquals(h.query(a, b, 3).toList(), h.withListener(listener).query(a, b, 3).toList());
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws IOException {
+        SmallHilbertCurve curve = h.withListener(flightRecorder());
+        File file = File.createTempFile("hilbert", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("org.davidmoten.hilbert.Perimeter");
+                recording.enable("org.davidmoten.hilbert.Sort");
+                recording.enable("org.davidmoten.hilbert.Ranges");
+                recording.enable("org.davidmoten.hilbert.Merge");
+                recording.start();
+                curve.query(a, b, 2);
+                recording.stop();
+                recording.dump(file.toPath());
+            }
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+            Map<String, RecordedEvent> byName = new HashMap<>();
+            for (RecordedEvent event : events) {
+                byName.put(event.getEventType().getName(), event);
+            }
+            assertEquals(24, byName.get("org.davidmoten.hilbert.Perimeter").getLong("cells"));
+            assertEquals(24, byName.get("org.davidmoten.hilbert.Sort").getLong("cells"));
+            assertEquals(h.query(a, b).size(),
+                    byName.get("org.davidmoten.hilbert.Ranges").getLong("exactRanges"));
+            RecordedEvent merge = byName.get("org.davidmoten.hilbert.Merge");
+            assertEquals(2, merge.getLong("ranges"));
+            assertEquals(48, merge.getLong("exactCells"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFlightRecorderWithoutRecording() {
+        SmallHilbertCurve curve = h.withListener(flightRecorder());
+        assertEquals(h.query(a, b, 2).toList(), curve.query(a, b, 2).toList());
+    }
+
+    private static QueryListener flightRecorder() {
+        try {
+            return QueryListener.flightRecorder();
+        } catch (UnsupportedOperationException e) {
+            // surefire runs against target/classes which ignores the Java 11 classes
+            // of the multi-release jar so the JFR tests run against the jar (failsafe)
+            Assume.assumeNoException(e);
+            return null;
+        }
+    }
+
+    private static final class RecordingListener implements QueryListener {
+
+        long perimeterCells;
+        long sortedCells;
+        long exactRanges;
+        long mergedGaps;
+        long ranges;
+        long exactCells;
+        long coveredCells;
+        long nanos;
+
+        @Override
+        public void perimeterVisited(long cells, long nanos) {
+            this.perimeterCells = cells;
+            this.nanos += nanos;
+        }
+
+        @Override
+        public void perimeterSorted(long cells, long nanos) {
+            this.sortedCells = cells;
+            this.nanos += nanos;
+        }
+
+        @Override
+        public void rangesBuilt(long exactRanges, long nanos) {
+            this.exactRanges = exactRanges;
+            this.nanos += nanos;
+        }
+
+        @Override
+        public void rangesMerged(long mergedGaps, long ranges, long exactCells,
+                long coveredCells) {
+            this.mergedGaps = mergedGaps;
+            this.ranges = ranges;
+            this.exactCells = exactCells;
+            this.coveredCells = coveredCells;
+        }
+    }
+
+}
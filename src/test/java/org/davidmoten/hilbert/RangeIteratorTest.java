@@ -0,0 +1,69 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.github.davidmoten.guavamini.Lists;
+
+public class RangeIteratorTest {
+
+    @Test
+    public void testSameRangesAsQuery() {
+        Random r = new Random(1);
+        for (int dimensions = 2; dimensions <= 4; dimensions++) {
+            SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(dimensions);
+            for (int i = 0; i < 20; i++) {
+                long[] a = new long[dimensions];
+                long[] b = new long[dimensions];
+                for (int j = 0; j < dimensions; j++) {
+                    a[j] = r.nextInt(32);
+                    b[j] = r.nextInt(32);
+                }
+                List<Range> expected = c.query(a, b).toList();
+                assertEquals(expected, Lists.newArrayList(c.queryIterator(a, b)));
+                assertEquals(expected, c.queryStream(a, b).collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Test
+    public void testFirstRangesOfHugeQueryAreAvailableImmediately() {
+        // the exact query would produce a very large number of ranges
+        SmallHilbertCurve c = HilbertCurve.small().bits(21).dimensions(3);
+        long[] a = { 1, 1, 1 };
+        long[] b = { 2000000, 2000000, 2000000 };
+        List<Range> first = c.queryStream(a, b).limit(10).collect(Collectors.toList());
+        assertEquals(10, first.size());
+        for (int i = 1; i < first.size(); i++) {
+            assertTrue(first.get(i - 1).high() + 1 < first.get(i).low());
+        }
+    }
+
+    @Test
+    public void testHasNextIsIdempotent() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(3).dimensions(2);
+        Iterator<Range> it = c.queryIterator(new long[] { 0, 0 }, new long[] { 7, 7 });
+        assertTrue(it.hasNext());
+        assertTrue(it.hasNext());
+        assertEquals(Range.create(0, 63), it.next());
+        assertFalse(it.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextAfterEnd() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(3).dimensions(2);
+        Iterator<Range> it = c.queryIterator(new long[] { 1, 1 }, new long[] { 1, 1 });
+        it.next();
+        it.next();
+    }
+
+}
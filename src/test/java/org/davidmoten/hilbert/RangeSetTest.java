@@ -0,0 +1,185 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RangeSetTest {
+
+    private static final RangeSet SET = RangeSet.create(new long[] { 2, 10, 20 },
+            new long[] { 4, 10, 25 });
+
+    @Test
+    public void testContains() {
+        boolean[] expected = new boolean[30];
+        for (int i = 0; i < 30; i++) {
+            expected[i] = (i >= 2 && i <= 4) || i == 10 || (i >= 20 && i <= 25);
+            assertEquals("" + i, expected[i], SET.contains(i));
+        }
+        assertFalse(SET.contains(Long.MIN_VALUE));
+        assertFalse(SET.contains(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testEmpty() {
+        RangeSet s = new Ranges(0).toRangeSet();
+        assertEquals(0, s.size());
+        assertFalse(s.contains(0));
+        assertFalse(s.cursor().seek(0));
+    }
+
+    @Test
+    public void testFromRanges() {
+        Ranges ranges = new Ranges(2).add(1, 2).add(5, 6).add(20, 30);
+        RangeSet s = ranges.toRangeSet();
+        assertEquals(ranges.toList(), s.toList());
+        assertEquals(RangeSet.create(new long[] { 1, 20 }, new long[] { 6, 30 }), s);
+    }
+
+    @Test
+    public void testCursor() {
+        RangeSet.Cursor c = SET.cursor();
+        assertFalse(c.contains(1));
+        assertEquals(2, c.low());
+        assertTrue(c.contains(3));
+        assertFalse(c.contains(5));
+        // the next key that could be contained
+        assertEquals(10, c.low());
+        assertTrue(c.contains(10));
+        assertTrue(c.contains(25));
+        assertEquals(20, c.low());
+        assertEquals(25, c.high());
+        assertFalse(c.seek(26));
+        c.reset();
+        assertTrue(c.contains(2));
+    }
+
+    @Test
+    public void testContainsAllMatchesContains() {
+        Random r = new Random(1);
+        Ranges ranges = new Ranges(0);
+        long x = 0;
+        for (int i = 0; i < 1000; i++) {
+            x += 1 + r.nextInt(20);
+            long low = x;
+            x += r.nextInt(20);
+            ranges.add(low, x);
+        }
+        RangeSet s = ranges.toRangeSet();
+        long[] keys = new long[5000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = r.nextInt((int) x + 10) - 5;
+        }
+        check(s, keys);
+        Arrays.sort(keys);
+        check(s, keys);
+    }
+
+    private static void check(RangeSet s, long[] keys) {
+        BitSet bits = new BitSet();
+        bits.set(0, keys.length);
+        s.containsAll(keys, bits);
+        for (int i = 0; i < keys.length; i++) {
+            final long key = keys[i];
+            assertEquals(s.stream().anyMatch(range -> range.contains(key)), bits.get(i));
+        }
+    }
+
+    @Test
+    public void testSetAlgebraMatchesBitSets() {
+        Random r = new Random(2);
+        for (int i = 0; i < 2000; i++) {
+            BitSet x = randomBits(r);
+            BitSet y = randomBits(r);
+            RangeSet a = toRangeSet(x);
+            RangeSet b = toRangeSet(y);
+
+            BitSet union = (BitSet) x.clone();
+            union.or(y);
+            assertEquals(toRangeSet(union), a.union(b));
+
+            BitSet intersection = (BitSet) x.clone();
+            intersection.and(y);
+            assertEquals(toRangeSet(intersection), a.intersection(b));
+
+            BitSet difference = (BitSet) x.clone();
+            difference.andNot(y);
+            assertEquals(toRangeSet(difference), a.difference(b));
+        }
+    }
+
+    @Test
+    public void testKWayUnionMatchesBitSets() {
+        Random r = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            List<RangeSet> sets = new ArrayList<>();
+            BitSet union = new BitSet();
+            int k = r.nextInt(8);
+            for (int j = 0; j < k; j++) {
+                BitSet x = randomBits(r);
+                union.or(x);
+                sets.add(toRangeSet(x));
+            }
+            assertEquals(toRangeSet(union), RangeSet.union(sets));
+        }
+    }
+
+    @Test
+    public void testUnionStreamsIntoMaxRanges() {
+        RangeSet a = RangeSet.create(new long[] { 1, 20, 40 }, new long[] { 2, 22, 41 });
+        RangeSet b = RangeSet.create(new long[] { 3, 30 }, new long[] { 5, 31 });
+        Ranges out = new Ranges(2);
+        RangeSet.union(Arrays.asList(a, b), out);
+        // 1-2 and 3-5 are adjacent so are joined, then gaps 22-30 and 31-40 are joined
+        assertEquals(Arrays.asList(Range.create(1, 5), Range.create(20, 41)), out.toList());
+    }
+
+    @Test
+    public void testDifferenceAtExtremes() {
+        RangeSet a = RangeSet.create(new long[] { Long.MIN_VALUE }, new long[] { Long.MAX_VALUE });
+        RangeSet b = RangeSet.create(new long[] { 0 }, new long[] { Long.MAX_VALUE });
+        assertEquals(RangeSet.create(new long[] { Long.MIN_VALUE }, new long[] { -1 }),
+                a.difference(b));
+        assertEquals(b, a.intersection(b));
+        assertEquals(a, a.union(b));
+    }
+
+    private static BitSet randomBits(Random r) {
+        BitSet bits = new BitSet();
+        int n = r.nextInt(64);
+        for (int i = 0; i < n; i++) {
+            bits.set(r.nextInt(64));
+        }
+        return bits;
+    }
+
+    private static RangeSet toRangeSet(BitSet bits) {
+        Ranges ranges = new Ranges(0);
+        int i = bits.nextSetBit(0);
+        while (i >= 0) {
+            int end = bits.nextClearBit(i);
+            ranges.add(i, end - 1);
+            i = bits.nextSetBit(end);
+        }
+        return ranges.toRangeSet();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateOverlappingThrows() {
+        RangeSet.create(new long[] { 1, 3 }, new long[] { 3, 4 });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateDifferentLengthsThrows() {
+        RangeSet.create(new long[] { 1, 3 }, new long[] { 3 });
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.davidmoten.hilbert;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reduction of a large number of ranges (as produced by a query over a big
+ * region) to a small maximum number of ranges by {@link Ranges}.
+ */
+@State(Scope.Benchmark)
+public class RangesBenchmarks {
+
+    @Param({ "100000", "1000000", "10000000" })
+    public int count;
+
+    @Param({ "8", "64", "1024" })
+    public int maxRanges;
+
+    private long[] lows;
+    private long[] highs;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(1);
+        lows = new long[count];
+        highs = new long[count];
+        long x = 0;
+        for (int i = 0; i < count; i++) {
+            // gaps and lengths with plenty of ties like real query output
+            x += 1 + r.nextInt(100);
+            lows[i] = x;
+            x += r.nextInt(10);
+            highs[i] = x;
+        }
+    }
+
+    @Benchmark
+    public Ranges reduce() {
+        Ranges ranges = new Ranges(maxRanges);
+        for (int i = 0; i < count; i++) {
+            ranges.add(lows[i], highs[i]);
+        }
+        return ranges;
+    }
+
+}
@@ -1,9 +1,11 @@
 package org.davidmoten.hilbert;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -65,12 +67,189 @@ public class RangesTest {
             checkIs(ranges, 10, 229);
         }
         {
+            // the exact ranges are 10-10, 26-28, 31-48, 51-53, 69-69, 122-124,
+            // 127-128, 131-132, 210-221, 227-229 so the largest gap is 132-210
             int maxRanges = 2;
             Ranges ranges = c.query(point1, point2, maxRanges);
-            checkIs(ranges, 10, 10, 26, 229);
+            checkIs(ranges, 10, 132, 210, 229);
         }
     }
 
+    @Test
+    public void testJoinsSmallestGapsLowestFirst() {
+        Ranges r = new Ranges(3);
+        r.add(1, 2);
+        r.add(5, 5);
+        r.add(8, 9);
+        r.add(12, 12);
+        r.add(20, 20);
+        // gaps are 3, 3, 3, 8 so the lowest two gaps of 3 are joined
+        checkIs(r, 1, 9, 12, 12, 20, 20);
+    }
+
+    @Test
+    public void testJoinsIntoHighestRange() {
+        Ranges r = new Ranges(2);
+        r.add(1, 1);
+        r.add(10, 10);
+        r.add(11, 11);
+        r.add(12, 12);
+        r.add(14, 14);
+        checkIs(r, 1, 1, 10, 14);
+    }
+
+    @Test
+    public void testSameAsJoiningSmallestGapsOfAllRanges() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            int bufferSize = 1 + random.nextInt(10);
+            int n = 1 + random.nextInt(40);
+            List<long[]> list = new ArrayList<>();
+            Ranges r = new Ranges(bufferSize);
+            long x = random.nextInt(5);
+            for (int j = 0; j < n; j++) {
+                long low = x;
+                long high = low + random.nextInt(3);
+                r.add(low, high);
+                list.add(new long[] { low, high });
+                x = high + 1 + random.nextInt(1 + random.nextInt(20));
+            }
+            // join the pair with the smallest gap (lowest pair first) until small
+            // enough
+            while (list.size() > bufferSize) {
+                int best = 0;
+                for (int j = 1; j + 1 < list.size(); j++) {
+                    if (list.get(j + 1)[0] - list.get(j)[1] < list.get(best + 1)[0]
+                            - list.get(best)[1]) {
+                        best = j;
+                    }
+                }
+                list.get(best)[1] = list.remove(best + 1)[1];
+            }
+            List<Range> expected = new ArrayList<>();
+            for (long[] range : list) {
+                expected.add(Range.create(range[0], range[1]));
+            }
+            assertEquals(expected, r.toList());
+            assertEquals(expected.size(), r.size());
+        }
+    }
+
+    @Test
+    public void testUnlimitedKeepsAllRanges() {
+        Ranges r = new Ranges(0);
+        for (int i = 0; i < 100; i++) {
+            r.add(i * 3, i * 3 + 1);
+        }
+        assertEquals(100, r.size());
+        assertEquals(Range.create(297, 298), r.toList().get(99));
+    }
+
+    @Test
+    public void testAddDoesNotAllocateWhenBufferIsFull() {
+        Ranges r = new Ranges(64);
+        long[] x = new long[1];
+        Allocations.allocatedBytes(1, () -> {
+            for (int i = 0; i < 1000; i++) {
+                r.add(x[0], x[0]);
+                x[0] += 2 + (i % 7);
+            }
+        });
+        assertEquals(0, Allocations.allocatedBytes(1, () -> {
+            for (int i = 0; i < 100000; i++) {
+                r.add(x[0], x[0]);
+                x[0] += 2 + (i % 7);
+            }
+        }));
+        assertEquals(64, r.size());
+    }
+
+    @Test
+    public void testCoverageStatistics() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(2);
+        long[] point1 = new long[] { 3, 3 };
+        long[] point2 = new long[] { 8, 10 };
+        Ranges exact = c.query(point1, point2);
+        assertEquals(6 * 8, exact.exactCells());
+        assertEquals(6 * 8, exact.coveredCells());
+        assertEquals(1, exact.overCoverage(), 0);
+        assertEquals(0, exact.mergedGapCount());
+        assertArrayEquals(new long[64], exact.mergedGapHistogram());
+
+        Ranges ranges = c.query(point1, point2, 2);
+        assertEquals(6 * 8, ranges.exactCells());
+        assertEquals(132 - 10 + 1 + 229 - 210 + 1, ranges.coveredCells());
+        assertEquals(143 / 48.0, ranges.overCoverage(), 0.0000001);
+        assertEquals(exact.size() - 2, ranges.mergedGapCount());
+        long[] histogram = ranges.mergedGapHistogram();
+        long merged = 0;
+        for (long count : histogram) {
+            merged += count;
+        }
+        assertEquals(ranges.mergedGapCount(), merged);
+    }
+
+    @Test
+    public void testMergedGapHistogramBuckets() {
+        Ranges r = new Ranges(1);
+        // gaps of 0, 1, 2, 3, 4 and 2^40 cells
+        r.add(0, 0);
+        r.add(1, 1);
+        r.add(3, 3);
+        r.add(6, 6);
+        r.add(10, 10);
+        r.add(15, 15);
+        r.add(16 + (1L << 40), 16 + (1L << 40));
+        long[] histogram = r.mergedGapHistogram();
+        assertEquals(1, histogram[0]);
+        assertEquals(1, histogram[1]);
+        assertEquals(2, histogram[2]);
+        assertEquals(1, histogram[3]);
+        assertEquals(1, histogram[41]);
+        assertEquals(6, r.mergedGapCount());
+        assertEquals(7, r.exactCells());
+        assertEquals(16 + (1L << 40) + 1, r.coveredCells());
+    }
+
+    @Test
+    public void testCoverageOfEmptyRanges() {
+        Ranges r = new Ranges(4);
+        assertEquals(0, r.coveredCells());
+        assertEquals(1, r.overCoverage(), 0);
+    }
+
+    @Test
+    public void testResetClearsCoverageStatistics() {
+        Ranges r = new Ranges(1);
+        r.add(0, 0);
+        r.add(5, 5);
+        r.reset(0);
+        r.add(1, 2);
+        assertEquals(2, r.coveredCells());
+        assertEquals(0, r.mergedGapCount());
+        assertArrayEquals(new long[64], r.mergedGapHistogram());
+    }
+
+    @Test
+    public void testCellCountsSaturateForTheWholeOf63Bits() {
+        Ranges r = new Ranges(0);
+        r.add(0, Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, r.exactCells());
+        assertEquals(Long.MAX_VALUE, r.coveredCells());
+        assertEquals(1, r.overCoverage(), 0);
+    }
+
+    @Test
+    public void testCoveredCellsSaturateWhenMerged() {
+        Ranges r = new Ranges(1);
+        r.add(0, 5);
+        r.add(10, Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE - 3, r.exactCells());
+        assertEquals(Long.MAX_VALUE, r.coveredCells());
+        assertEquals(1, r.mergedGapCount());
+        assertEquals(1, r.mergedGapHistogram()[3]);
+    }
+
     private void checkIs(Ranges r, int... ords) {
         List<Range> list = new ArrayList<>();
         for (int i = 0; i < ords.length; i += 2) {
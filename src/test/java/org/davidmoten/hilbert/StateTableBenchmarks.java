@@ -0,0 +1,115 @@
+package org.davidmoten.hilbert;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the table driven engine used by {@link SmallHilbertCurve} for 2 and
+ * 3 dimensions with Skilling's transform and with the array free
+ * {@link HilbertCurve2D} and {@link HilbertCurve3D}.
+ */
+@State(Scope.Benchmark)
+public class StateTableBenchmarks {
+
+    private static final int N = 1024;
+
+    @Param({ "2", "3" })
+    public int dimensions;
+
+    @Param({ "10", "16", "21" })
+    public int bits;
+
+    private SmallHilbertCurve curve;
+    private HilbertCurve2D curve2D;
+    private HilbertCurve3D curve3D;
+    private long[][] points;
+    private long[] indexes;
+    private long[] x;
+
+    @Setup
+    public void setup() {
+        curve = HilbertCurve.small().bits(bits).dimensions(dimensions);
+        curve2D = HilbertCurve2D.bits(bits);
+        curve3D = HilbertCurve3D.bits(bits);
+        points = new long[N][];
+        indexes = new long[N];
+        x = new long[dimensions];
+        long step = Math.max(1, curve.maxIndex() / N);
+        for (int i = 0; i < N; i++) {
+            indexes[i] = i * step;
+            points[i] = curve.point(indexes[i]);
+        }
+    }
+
+    @Benchmark
+    public void indexTable(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            b.consume(curve.index(points[i]));
+        }
+    }
+
+    @Benchmark
+    public void indexScalar(Blackhole b) {
+        if (dimensions == 2) {
+            for (int i = 0; i < N; i++) {
+                long[] p = points[i];
+                b.consume(curve2D.index(p[0], p[1]));
+            }
+        } else {
+            for (int i = 0; i < N; i++) {
+                long[] p = points[i];
+                b.consume(curve3D.index(p[0], p[1], p[2]));
+            }
+        }
+    }
+
+    @Benchmark
+    public void indexSkilling(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            long[] t = HilbertCurve.transposedIndex(bits, points[i]);
+            long index = 0;
+            for (int j = 0; j < dimensions; j++) {
+                index |= Bits.spread(t[j], dimensions) << (dimensions - 1 - j);
+            }
+            b.consume(index);
+        }
+    }
+
+    @Benchmark
+    public void pointTable(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            curve.point(indexes[i], x);
+            b.consume(x);
+        }
+    }
+
+    @Benchmark
+    public void pointScalar(Blackhole b) {
+        if (dimensions == 2) {
+            for (int i = 0; i < N; i++) {
+                b.consume(curve2D.point(indexes[i]));
+            }
+        } else {
+            for (int i = 0; i < N; i++) {
+                b.consume(curve3D.point(indexes[i]));
+            }
+        }
+    }
+
+    @Benchmark
+    public void pointSkilling(Blackhole b) {
+        for (int i = 0; i < N; i++) {
+            long index = indexes[i];
+            for (int j = 0; j < dimensions; j++) {
+                x[j] = Bits.compact(index >>> (dimensions - 1 - j), dimensions);
+            }
+            HilbertCurve.transposedIndexToPoint(bits, x);
+            b.consume(x);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StateTableTest {
+
+    @Test
+    public void testNoTableForMoreThanThreeDimensions() {
+        assertNull(StateTable.forDimensions(4));
+    }
+
+    @Test
+    public void testExhaustive2D() {
+        for (int bits = 1; bits <= 7; bits++) {
+            checkExhaustive(bits, 2);
+        }
+    }
+
+    @Test
+    public void testExhaustive3D() {
+        for (int bits = 1; bits <= 5; bits++) {
+            checkExhaustive(bits, 3);
+        }
+    }
+
+    @Test
+    public void testRandomPointsUpToMaximumBits() {
+        Random r = new Random(42);
+        for (int dimensions = 2; dimensions <= 3; dimensions++) {
+            for (int bits = 1; bits * dimensions <= 63; bits++) {
+                HilbertCurve c = HilbertCurve.bits(bits).dimensions(dimensions);
+                SmallHilbertCurve small = HilbertCurve.small().bits(bits).dimensions(dimensions);
+                for (int i = 0; i < 1000; i++) {
+                    long[] point = new long[dimensions];
+                    for (int j = 0; j < dimensions; j++) {
+                        point[j] = r.nextLong() & ((1L << bits) - 1);
+                    }
+                    long index = small.index(point);
+                    assertEquals(c.index(point).longValue(), index);
+                    assertArrayEquals(point, small.point(index));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOrientationMatchesSkillingForMoreDimensions() {
+        Random r = new Random(7);
+        for (int dimensions = 2; dimensions <= 9; dimensions++) {
+            int bits = 63 / dimensions;
+            SmallHilbertCurve c = HilbertCurve.small().bits(bits).dimensions(dimensions);
+            Orientation o = new Orientation(dimensions);
+            for (int i = 0; i < 1000; i++) {
+                long index = r.nextLong() & ((1L << (bits * dimensions)) - 1);
+                long[] point = c.point(index);
+                o.reset();
+                long encoded = 0;
+                for (int level = bits - 1; level >= 0; level--) {
+                    long digit = 0;
+                    for (int j = 0; j < dimensions; j++) {
+                        digit = (digit << 1) | ((point[j] >>> level) & 1);
+                    }
+                    encoded = (encoded << dimensions) | o.encodeDigit(digit);
+                }
+                assertEquals(index, encoded);
+                o.reset();
+                long[] decoded = new long[dimensions];
+                for (int level = bits - 1; level >= 0; level--) {
+                    long digit = o.decodeDigit((index >>> (level * dimensions)) & ((1L << dimensions) - 1));
+                    for (int j = 0; j < dimensions; j++) {
+                        decoded[j] |= ((digit >>> (dimensions - 1 - j)) & 1) << level;
+                    }
+                }
+                assertArrayEquals(point, decoded);
+            }
+        }
+    }
+
+    private static void checkExhaustive(int bits, int dimensions) {
+        HilbertCurve c = HilbertCurve.bits(bits).dimensions(dimensions);
+        SmallHilbertCurve small = HilbertCurve.small().bits(bits).dimensions(dimensions);
+        long[] x = new long[dimensions];
+        for (long index = 0; index < 1L << (bits * dimensions); index++) {
+            long[] point = c.point(index);
+            small.point(index, x);
+            assertArrayEquals(point, x);
+            assertEquals(index, small.index(point));
+        }
+    }
+
+}
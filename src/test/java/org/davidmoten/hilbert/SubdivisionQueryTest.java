@@ -0,0 +1,159 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.github.davidmoten.guavamini.Lists;
+
+public class SubdivisionQueryTest {
+
+    @Test
+    public void testSameRangesAsPerimeterAlgorithm() {
+        Random r = new Random(1);
+        for (int dimensions = 2; dimensions <= 5; dimensions++) {
+            // the perimeter algorithm is slow for large boxes in 5 dimensions
+            int maxBits = dimensions == 5 ? 4 : 6;
+            for (int bits = 1; bits <= maxBits; bits++) {
+                SmallHilbertCurve c = HilbertCurve.small().bits(bits).dimensions(dimensions);
+                for (int i = 0; i < 10; i++) {
+                    long[] a = randomPoint(r, c);
+                    long[] b = randomPoint(r, c);
+                    assertEquals(c.query(a, b).toList(), c.querySubdivision(a, b).toList());
+                    assertEquals(c.query(a, b, 3).toList(),
+                            c.querySubdivision(a, b, 3).toList());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameRangesAsPerimeterAlgorithmDeepCurve() {
+        Random r = new Random(2);
+        SmallHilbertCurve c = HilbertCurve.small().bits(31).dimensions(2);
+        for (int i = 0; i < 20; i++) {
+            long[] a = randomPoint(r, c);
+            long[] b = new long[] { a[0] + r.nextInt(100), a[1] + r.nextInt(100) };
+            if (b[0] <= c.maxOrdinate() && b[1] <= c.maxOrdinate()) {
+                assertEquals(c.query(a, b).toList(), c.querySubdivision(a, b).toList());
+            }
+        }
+    }
+
+    @Test
+    public void testSameRangesAsPerimeterAlgorithmManyDimensions() {
+        for (int dimensions = 31; dimensions <= 33; dimensions++) {
+            SmallHilbertCurve c = HilbertCurve.small().bits(1).dimensions(dimensions);
+            long[] a = new long[dimensions];
+            long[] b = new long[dimensions];
+            b[0] = 1;
+            b[dimensions - 1] = 1;
+            List<Range> expected = c.query(a, b).toList();
+            assertEquals(2, expected.size());
+            assertEquals(expected, c.querySubdivision(a, b).toList());
+            assertEquals(expected, c.queryApproximate(a, b, 1).toList());
+            assertEquals(expected, c.queryStream(a, b).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testSameRangesAsPerimeterAlgorithmManyDimensionsDeeper() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(2).dimensions(31);
+        long[] a = new long[31];
+        long[] b = new long[31];
+        a[3] = 1;
+        b[3] = 2;
+        b[17] = 3;
+        b[30] = 1;
+        assertEquals(c.query(a, b).toList(), c.querySubdivision(a, b).toList());
+    }
+
+    @Test
+    public void testWholeDomainIsOneRange() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(20).dimensions(3);
+        long max = c.maxOrdinate();
+        Ranges ranges = c.querySubdivision(new long[] { 0, 0, 0 }, new long[] { max, max, max });
+        assertEquals(1, ranges.size());
+        assertEquals(Range.create(0, c.maxIndex()), ranges.toList().get(0));
+    }
+
+    @Test
+    public void testSinglePoint() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(4);
+        long[] a = { 1, 2, 3, 4 };
+        assertEquals(Range.create(c.index(a)), c.querySubdivision(a, a).toList().get(0));
+    }
+
+    @Test
+    public void testApproximateAtFullDepthIsExact() {
+        Random r = new Random(3);
+        SmallHilbertCurve c = HilbertCurve.small().bits(6).dimensions(3);
+        for (int i = 0; i < 20; i++) {
+            long[] a = randomPoint(r, c);
+            long[] b = randomPoint(r, c);
+            assertEquals(c.query(a, b).toList(), c.queryApproximate(a, b, 6).toList());
+        }
+    }
+
+    @Test
+    public void testApproximateCoverageMatchesDocumentedBound() {
+        Random r = new Random(4);
+        for (int dimensions = 2; dimensions <= 4; dimensions++) {
+            int bits = 12 / dimensions + 1;
+            SmallHilbertCurve c = HilbertCurve.small().bits(bits).dimensions(dimensions);
+            for (int depth = 0; depth <= bits; depth++) {
+                for (int i = 0; i < 10; i++) {
+                    long[] a = randomPoint(r, c);
+                    long[] b = randomPoint(r, c);
+                    Ranges ranges = c.queryApproximate(a, b, depth);
+                    long s = 1L << (bits - depth);
+                    long expected = 1;
+                    for (int j = 0; j < dimensions; j++) {
+                        long min = Math.min(a[j], b[j]);
+                        long max = Math.max(a[j], b[j]);
+                        expected *= ((max + s) / s - min / s) * s;
+                    }
+                    long covered = ranges.stream().mapToLong(x -> x.high() - x.low() + 1).sum();
+                    assertEquals(expected, covered);
+                    assertEquals(covered, ranges.coveredCells());
+                    // exact cells are those of the search box not of the coarse ranges
+                    long volume = c.query(a, b).exactCells();
+                    assertEquals(volume, ranges.exactCells());
+                    assertEquals((double) covered / volume, ranges.overCoverage(), 1e-9);
+                    // every exact range is covered
+                    for (Range exact : c.query(a, b)) {
+                        assertTrue(ranges.stream().anyMatch(
+                                x -> x.contains(exact.low()) && x.contains(exact.high())));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testApproximateAtDepthZeroIsWholeCurve() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(5);
+        long[] a = { 1, 2, 3, 4, 5 };
+        assertEquals(Lists.newArrayList(Range.create(0, c.maxIndex())),
+                c.queryApproximate(a, a, 0).toList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testApproximateDepthTooLarge() {
+        HilbertCurve.small().bits(5).dimensions(2).queryApproximate(new long[2], new long[2], 6);
+    }
+
+    private static long[] randomPoint(Random r, SmallHilbertCurve c) {
+        long[] x = new long[c.dimensions()];
+        for (int j = 0; j < x.length; j++) {
+            x[j] = r.nextLong() & c.maxOrdinate();
+        }
+        return x;
+    }
+
+}
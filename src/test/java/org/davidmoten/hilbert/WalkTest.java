@@ -0,0 +1,104 @@
+package org.davidmoten.hilbert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class WalkTest {
+
+    @Test
+    public void testWalkWholeCurveMatchesPoint() {
+        for (int dimensions = 2; dimensions <= 5; dimensions++) {
+            for (int bits = 1; bits * dimensions <= 15; bits++) {
+                SmallHilbertCurve c = HilbertCurve.small().bits(bits).dimensions(dimensions);
+                Walk walk = c.walk(0, c.maxIndex());
+                long[] x = new long[dimensions];
+                for (long i = 0; i <= c.maxIndex(); i++) {
+                    assertTrue(walk.next());
+                    assertEquals(i, walk.index());
+                    walk.point(x);
+                    assertArrayEquals(c.point(i), x);
+                }
+                assertFalse(walk.next());
+                assertFalse(walk.next());
+            }
+        }
+    }
+
+    @Test
+    public void testWalkPartialRangeMatchesPoint() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(21).dimensions(3);
+        long low = 123456789L;
+        long high = low + 100000;
+        Walk walk = c.walk(low, high);
+        long[] x = new long[3];
+        for (long i = low; i <= high; i++) {
+            assertTrue(walk.next());
+            c.point(i, x);
+            for (int j = 0; j < 3; j++) {
+                assertEquals(x[j], walk.ordinate(j));
+            }
+        }
+        assertFalse(walk.next());
+    }
+
+    @Test
+    public void testWalkToMaxIndex() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(31).dimensions(2);
+        Walk walk = c.walk(c.maxIndex() - 2, c.maxIndex());
+        long[] x = new long[2];
+        for (long i = c.maxIndex() - 2; i <= c.maxIndex(); i++) {
+            assertTrue(walk.next());
+            walk.point(x);
+            assertArrayEquals(c.point(i), x);
+        }
+        assertFalse(walk.next());
+    }
+
+    @Test
+    public void testConsecutivePointsDifferInOneOrdinateByOne() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(6).dimensions(4);
+        long[] previous = new long[4];
+        AtomicLong count = new AtomicLong();
+        c.forEach(Range.create(0, c.maxIndex()), (index, point) -> {
+            if (index > 0) {
+                long distance = 0;
+                for (int j = 0; j < point.length; j++) {
+                    distance += Math.abs(point[j] - previous[j]);
+                }
+                assertEquals(1, distance);
+            }
+            System.arraycopy(point, 0, previous, 0, point.length);
+            count.incrementAndGet();
+        });
+        assertEquals(c.maxIndex() + 1, count.get());
+    }
+
+    @Test
+    public void testSinglePoint() {
+        SmallHilbertCurve c = HilbertCurve.small().bits(5).dimensions(2);
+        AtomicLong count = new AtomicLong();
+        c.forEach(7, 7, (index, point) -> {
+            assertEquals(7, index);
+            assertArrayEquals(c.point(7), point);
+            count.incrementAndGet();
+        });
+        assertEquals(1, count.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLowGreaterThanHigh() {
+        HilbertCurve.small().bits(5).dimensions(2).walk(3, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHighGreaterThanMaxIndex() {
+        HilbertCurve.small().bits(5).dimensions(2).walk(0, 1024);
+    }
+
+}